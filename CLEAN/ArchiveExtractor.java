@@ -0,0 +1,201 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package org.apache.tools.ant.types.resources;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Extracts a collection of archive entries into a directory using a
+ * pool of worker threads.
+ *
+ * <p>The calling thread resolves entry metadata, creates directories
+ * and hands the files to the workers; each worker opens an entry,
+ * decompresses it and writes it out through its own buffer.  At most
+ * two tasks per worker are queued at any time, which bounds both memory
+ * and the number of open archives.  Modification times and, where the
+ * file system supports POSIX permissions, modes are preserved.</p>
+ */
+public class ArchiveExtractor {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final PosixFilePermission[] PERMISSION_BITS = {
+        PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE,
+        PosixFilePermission.OTHERS_READ, PosixFilePermission.GROUP_EXECUTE,
+        PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+        PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE,
+        PosixFilePermission.OWNER_READ,
+    };
+
+    private final File destDir;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param destDir the directory to extract into.
+     */
+    public ArchiveExtractor(File destDir) {
+        this.destDir = destDir;
+    }
+
+    /**
+     * Set the number of worker threads.
+     * @param threads number of threads, at least 1.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new BuildException("threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Extract the given entries, each to <code>destDir/getName()</code>.
+     * @param entries the entries to extract.
+     * @throws BuildException if any entry fails; the first failure is
+     *         reported after the remaining work has been cancelled.
+     */
+    public void extract(Collection<? extends ArchiveResource> entries) {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Semaphore slots = new Semaphore(threads * 2);
+        List<ArchiveResource> dirs = new ArrayList<ArchiveResource>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (final ArchiveResource entry : entries) {
+                if (failure.get() != null) {
+                    break;
+                }
+                if (!entry.isExists()) {
+                    continue;
+                }
+                final File target = targetFile(entry);
+                if (entry.isDirectory()) {
+                    if (!target.isDirectory() && !target.mkdirs()) {
+                        throw new BuildException("cannot create " + target);
+                    }
+                    dirs.add(entry);
+                    continue;
+                }
+                slots.acquireUninterruptibly();
+                pool.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            if (failure.get() == null) {
+                                extractFile(entry, target);
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            slots.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                    // keep waiting for the queued entries
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            }
+        }
+        Throwable t = failure.get();
+        if (t != null) {
+            throw t instanceof BuildException ? (BuildException) t
+                : new BuildException("extraction failed", t);
+        }
+        // writing files touched their parents, so directory times go last
+        for (ArchiveResource dir : dirs) {
+            applyAttributes(dir, targetFile(dir));
+        }
+    }
+
+    private File targetFile(ArchiveResource entry) {
+        File target = new File(destDir, entry.getName());
+        if (!target.toPath().normalize().startsWith(destDir.toPath().normalize())) {
+            throw new BuildException("entry " + entry.getName()
+                                     + " would be extracted outside " + destDir);
+        }
+        return target;
+    }
+
+    private static void extractFile(ArchiveResource entry, File target)
+        throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()
+            && !parent.isDirectory()) {
+            throw new IOException("cannot create " + parent);
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (InputStream in = entry.getInputStream();
+             OutputStream out = new FileOutputStream(target)) {
+            for (int n; (n = in.read(buf)) >= 0; ) {
+                out.write(buf, 0, n);
+            }
+        }
+        applyAttributes(entry, target);
+    }
+
+    private static void applyAttributes(ArchiveResource entry, File target) {
+        long time = entry.getLastModified();
+        if (time > 0) {
+            target.setLastModified(time);
+        }
+        int mode = entry.getMode();
+        if (mode == 0) {
+            return;
+        }
+        PosixFileAttributeView view = Files.getFileAttributeView(
+            target.toPath(), PosixFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        Set<PosixFilePermission> perms = EnumSet.noneOf(PosixFilePermission.class);
+        for (int bit = 0; bit < PERMISSION_BITS.length; bit++) {
+            if ((mode & (1 << bit)) != 0) {
+                perms.add(PERMISSION_BITS[bit]);
+            }
+        }
+        try {
+            view.setPermissions(perms);
+        } catch (IOException e) {
+            // permissions are best effort, like setLastModified
+        }
+    }
+}
@@ -17,7 +17,16 @@
  */
 package org.apache.tools.ant.types.resources;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.types.Resource;
@@ -32,10 +41,27 @@ public abstract class ArchiveResource extends Resource {
     private static final int NULL_ARCHIVE
         = Resource.getMagicNumber("null archive".getBytes());
 
+    /** Number of archive directories kept by the shared entry index. */
+    private static final int MAX_INDEXED_ARCHIVES = 16;
+
+    /**
+     * Entry metadata per archive, keyed by the archive's description,
+     * last modification time and size; least recently used evicted first.
+     */
+    private static final Map<String, Map<String, EntryInfo>> INDEXES
+        = new LinkedHashMap<String, Map<String, EntryInfo>>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(
+                Map.Entry<String, Map<String, EntryInfo>> eldest) {
+                return size() > MAX_INDEXED_ARCHIVES;
+            }
+        };
+
     private Resource archive;
-    private boolean haveEntry = false;
+    private boolean archiveFromFile = false;
+    private volatile boolean haveEntry = false;
     private boolean modeSet = false;
     private int mode = 0;
+    private EntryInfo entryInfo = null;
 
     /**
      * Default constructor.
@@ -81,6 +107,8 @@ public abstract class ArchiveResource extends Resource {
     public void setArchive(File a) {
         checkAttributesAllowed();
         archive = new FileResource(a);
+        archiveFromFile = true;
+        invalidateSortKey();
     }
 
     /**
@@ -109,6 +137,8 @@ public abstract class ArchiveResource extends Resource {
                                      + " are supported as archives");
         }
         archive = (Resource) a.iterator().next();
+        archiveFromFile = false;
+        invalidateSortKey();
     }
 
     /**
@@ -180,6 +210,75 @@ public abstract class ArchiveResource extends Resource {
         return mode;
     }
 
+    /**
+     * Map the bytes of a stored (uncompressed) entry directly from the
+     * archive.
+     * @return a read-only buffer holding the entry's content, or null if
+     *         the entry is compressed, its position in the archive is not
+     *         known or the archive is not available as a FileChannel.
+     * @throws IOException if the archive cannot be mapped.
+     */
+    public ByteBuffer getMappedEntry() throws IOException {
+        if (isReference()) {
+            return ((ArchiveResource) getCheckedRef()).getMappedEntry();
+        }
+        checkEntry();
+        EntryInfo e = entryInfo;
+        if (e == null || e.getDataOffset() < 0 || e.isDeflated()) {
+            return null;
+        }
+        FileChannel fc = openArchiveChannel();
+        if (fc == null) {
+            return null;
+        }
+        try {
+            return fc.map(FileChannel.MapMode.READ_ONLY, e.getDataOffset(),
+                          e.getStoredSize());
+        } finally {
+            fc.close();
+        }
+    }
+
+    /**
+     * Read the entry by seeking straight to its data inside the archive
+     * instead of streaming through everything before it.  Subclasses
+     * should try this from <code>getInputStream()</code> first.
+     * @return the entry's uncompressed content, or null if its position in
+     *         the archive is not known or the archive is not available as a
+     *         FileChannel.
+     * @throws IOException if the archive cannot be opened.
+     */
+    protected InputStream getIndexedInputStream() throws IOException {
+        checkEntry();
+        EntryInfo e = entryInfo;
+        if (e == null || e.getDataOffset() < 0) {
+            return null;
+        }
+        FileChannel fc = openArchiveChannel();
+        if (fc == null) {
+            return null;
+        }
+        InputStream slice = new ChannelSliceInputStream(fc, e.getDataOffset(),
+                                                        e.getStoredSize());
+        return e.isDeflated() ? new RawInflaterInputStream(slice) : slice;
+    }
+
+    private FileChannel openArchiveChannel() throws IOException {
+        if (!archiveFromFile) {
+            // only a file archive hands out a FileChannel; anything else
+            // would open the whole archive stream just to close it again
+            return null;
+        }
+        ReadableByteChannel ch = getArchive().getReadableChannel();
+        if (ch instanceof FileChannel) {
+            return (FileChannel) ch;
+        }
+        if (ch != null) {
+            ch.close();
+        }
+        return null;
+    }
+
     /**
      * Overrides the super version.
      * @param r the Reference to set.
@@ -231,6 +330,17 @@ public abstract class ArchiveResource extends Resource {
             * (getArchive() == null ? NULL_ARCHIVE : getArchive().hashCode());
     }
 
+    /**
+     * The sort key is kept when the archive was given as a file: then
+     * nothing but this resource's own setters can change
+     * <code>toString()</code>.  A nested archive resource may be changed
+     * behind our back, so its key is computed afresh.
+     * @return whether the archive was set with setArchive(File).
+     */
+    protected boolean isSortKeyCacheable() {
+        return archiveFromFile;
+    }
+
     /**
      * Format this Resource as a String.
      * @return String representatation of this Resource.
@@ -240,10 +350,23 @@ public abstract class ArchiveResource extends Resource {
             : getArchive().toString() + ':' + getName();
     }
 
-    private synchronized void checkEntry() throws BuildException {
+    /**
+     * Resolves the entry once.  The volatile read of haveEntry is the
+     * only cost after that; the attributes written by the first caller
+     * are published by the volatile write at the end of resolveEntry.
+     */
+    private void checkEntry() throws BuildException {
         if (haveEntry) {
             return;
         }
+        synchronized (this) {
+            if (!haveEntry) {
+                resolveEntry();
+            }
+        }
+    }
+
+    private void resolveEntry() throws BuildException {
         String name = getName();
         if (name == null) {
             throw new BuildException("entry name not set");
@@ -258,12 +381,243 @@ public abstract class ArchiveResource extends Resource {
         if (r.isDirectory()) {
             throw new BuildException(r + " denotes a directory.");
         }
-        fetchEntry();
+        Map<String, EntryInfo> index = getEntryIndex(r);
+        if (index == null) {
+            fetchEntry();
+        } else {
+            EntryInfo e = index.get(name);
+            entryInfo = e;
+            if (e == null) {
+                setExists(false);
+            } else {
+                setExists(true);
+                setDirectory(e.isDirectory());
+                setSize(e.getSize());
+                setLastModified(e.getLastModified());
+                setMode(e.getMode());
+            }
+        }
         haveEntry = true;
     }
 
+    /**
+     * Get the shared entry index of an archive, reading it on first use.
+     * An archive whose modification time or size is unknown could change
+     * without the key changing, so it is not indexed.
+     * @param r the archive.
+     * @return the index or null if it is not to be used.
+     */
+    private Map<String, EntryInfo> getEntryIndex(Resource r) {
+        long lastModified = r.getLastModified();
+        long size = r.getSize();
+        if (lastModified == Resource.UNKNOWN_DATETIME
+            || size == Resource.UNKNOWN_SIZE) {
+            return null;
+        }
+        String key = getClass().getName() + '|' + r + '|'
+            + lastModified + '|' + size + '|' + getIndexKey();
+        synchronized (INDEXES) {
+            Map<String, EntryInfo> index = INDEXES.get(key);
+            if (index != null) {
+                return index;
+            }
+        }
+        Map<String, EntryInfo> index;
+        try {
+            index = readEntries();
+        } catch (IOException e) {
+            throw new BuildException("failed to read " + r, e);
+        }
+        if (index != null) {
+            synchronized (INDEXES) {
+                INDEXES.put(key, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Describes settings that change how {@link #readEntries} parses the
+     * archive, such as an encoding; indexes read with different settings
+     * are kept apart.
+     * @return the settings as a string; empty by default.
+     */
+    protected String getIndexKey() {
+        return "";
+    }
+
     /**
      * fetches information from the named entry inside the archive.
      */
     protected abstract void fetchEntry();
+
+    /**
+     * Reads the metadata of all entries of the archive in one pass.
+     *
+     * <p>The result is shared by every ArchiveResource of the same type
+     * pointing to an unchanged archive, so subclasses that can list the
+     * archive's directory should override this.  The default returns
+     * null, in which case {@link #fetchEntry} is used for each entry.</p>
+     * @return entry metadata keyed by entry name as returned by
+     *         <code>getName()</code>, or null.
+     * @throws IOException if the archive cannot be read.
+     */
+    protected Map<String, EntryInfo> readEntries() throws IOException {
+        return null;
+    }
+
+    /**
+     * Metadata of a single archive entry.
+     */
+    protected static final class EntryInfo {
+        private final long size;
+        private final long lastModified;
+        private final int mode;
+        private final boolean directory;
+        private final long dataOffset;
+        private final long storedSize;
+        private final boolean deflated;
+
+        /**
+         * @param size the uncompressed size of the entry.
+         * @param lastModified the modification time of the entry.
+         * @param mode the Unix permission mask of the entry.
+         * @param directory whether the entry is a directory.
+         */
+        public EntryInfo(long size, long lastModified, int mode,
+                         boolean directory) {
+            this(size, lastModified, mode, directory, -1, 0, false);
+        }
+
+        /**
+         * @param size the uncompressed size of the entry.
+         * @param lastModified the modification time of the entry.
+         * @param mode the Unix permission mask of the entry.
+         * @param directory whether the entry is a directory.
+         * @param dataOffset position of the entry's data in the archive
+         *        (after any local header), -1 if unknown.
+         * @param storedSize number of bytes the data occupies there.
+         * @param deflated whether the data is raw deflate rather than stored.
+         */
+        public EntryInfo(long size, long lastModified, int mode,
+                         boolean directory, long dataOffset, long storedSize,
+                         boolean deflated) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.mode = mode;
+            this.directory = directory;
+            this.dataOffset = dataOffset;
+            this.storedSize = storedSize;
+            this.deflated = deflated;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public int getMode() {
+            return mode;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getDataOffset() {
+            return dataOffset;
+        }
+
+        public long getStoredSize() {
+            return storedSize;
+        }
+
+        public boolean isDeflated() {
+            return deflated;
+        }
+    }
+
+    /**
+     * Reads a byte range of a FileChannel with positional reads and closes
+     * the channel when closed.
+     */
+    private static final class ChannelSliceInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelSliceInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            len = (int) Math.min(len, end - position);
+            int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (n < 0) {
+                throw new EOFException("archive truncated");
+            }
+            position += n;
+            return n;
+        }
+
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Inflates raw deflate data, supplying the trailing dummy byte the
+     * <code>nowrap</code> Inflater may ask for, and returning the
+     * pooled Inflater on close.
+     */
+    private static final class RawInflaterInputStream extends InflaterInputStream {
+        private boolean eof = false;
+        private boolean closed = false;
+
+        RawInflaterInputStream(InputStream in) {
+            super(in, CompressionPool.borrowInflater(true), 8 * 1024);
+        }
+
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of entry data");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                CompressionPool.release(inf, true);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -1,7 +1,22 @@
 package com.blankj.util;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 
 /**
  * ReflectUtils: Clean, fluent API for common reflection tasks.
@@ -17,11 +32,77 @@ public final class ReflectUtils {
         }
     }
 
+    /**
+     * Loads every {@value #INDEX_RESOURCE} visible to {@code loader} and
+     * resolves the listed classes and members up front, so the first
+     * reflective call at runtime is a cache hit. Listed classes are loaded
+     * through {@code loader} without being initialized.
+     *
+     * @return the number of index entries that resolved
+     */
+    public static int preload(ClassLoader loader) {
+        int resolved = 0;
+        try {
+            Enumeration<URL> indexes = loader.getResources(INDEX_RESOURCE);
+            while (indexes.hasMoreElements()) {
+                try (InputStream in = indexes.nextElement().openStream()) {
+                    resolved += preload(new InputStreamReader(in, StandardCharsets.UTF_8), loader);
+                }
+            }
+        } catch (IOException e) {
+            throw new ReflectException(e);
+        }
+        return resolved;
+    }
+
+    /**
+     * Resolves the entries of an index: one {@code com.example.Type} or
+     * {@code com.example.Type#member} per line, {@code #} starting a comment
+     * line. A member entry resolves the field of that name, if any, and the
+     * overload index for methods of that name. Entries that no longer
+     * resolve are skipped so a stale index never breaks startup. Classes are
+     * loaded through the loader of ReflectUtils.
+     *
+     * @return the number of entries that resolved
+     */
+    public static int preload(Reader index) throws IOException {
+        return preload(index, ReflectUtils.class.getClassLoader());
+    }
+
+    private static int preload(Reader index, ClassLoader loader) throws IOException {
+        int resolved = 0;
+        BufferedReader reader = new BufferedReader(index);
+        for (String line; (line = reader.readLine()) != null; ) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int hash = line.indexOf('#');
+            String className = hash < 0 ? line : line.substring(0, hash);
+            Class<?> cls;
+            try {
+                cls = Class.forName(className, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                continue;
+            }
+            MemberCache cache = MEMBERS.get(cls);
+            if (hash < 0) {
+                cache.constructorsWithArity(cls, 0);
+            } else {
+                String member = line.substring(hash + 1);
+                lookupField(cls, member);
+                cache.methodsWithArity(cls, member, 0);
+            }
+            resolved++;
+        }
+        return resolved;
+    }
+
     public static <T> T newInstance(Class<T> clazz, Object... args) {
         try {
-            Constructor<T> ctor = findMatchingConstructor(clazz, args);
-            ctor.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            Constructor<T> ctor = (Constructor<T>) findMatchingConstructor(clazz, args);
             return ctor.newInstance(args);
+        } catch (ReflectException e) {
+            throw e;
         } catch (Exception e) {
             throw new ReflectException(e);
         }
@@ -30,8 +111,9 @@ public final class ReflectUtils {
     public static Object getFieldValue(Object target, String fieldName) {
         try {
             Field field = findField(target.getClass(), fieldName);
-            field.setAccessible(true);
             return field.get(target);
+        } catch (ReflectException e) {
+            throw e;
         } catch (Exception e) {
             throw new ReflectException(e);
         }
@@ -40,8 +122,9 @@ public final class ReflectUtils {
     public static void setFieldValue(Object target, String fieldName, Object value) {
         try {
             Field field = findField(target.getClass(), fieldName);
-            field.setAccessible(true);
             field.set(target, value);
+        } catch (ReflectException e) {
+            throw e;
         } catch (Exception e) {
             throw new ReflectException(e);
         }
@@ -50,48 +133,245 @@ public final class ReflectUtils {
     public static Object invoke(Object target, String methodName, Object... args) {
         try {
             Method method = findMethod(target.getClass(), methodName, args);
-            method.setAccessible(true);
             return method.invoke(target, args);
+        } catch (ReflectException e) {
+            throw e;
         } catch (Exception e) {
             throw new ReflectException(e);
         }
     }
 
-    // -- Internal helpers --
+    /**
+     * Like {@link #getFieldValue} but returns empty instead of throwing when
+     * the field does not exist. A present field holding {@code null} is also
+     * reported as empty.
+     */
+    public static Optional<Object> tryGetFieldValue(Object target, String fieldName) {
+        Field field = lookupField(target.getClass(), fieldName);
+        if (field == null) return Optional.empty();
+        try {
+            return Optional.ofNullable(field.get(target));
+        } catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
 
-    private static Constructor<?> findMatchingConstructor(Class<?> cls, Object[] args) throws NoSuchMethodException {
-        for (Constructor<?> ctor : cls.getDeclaredConstructors()) {
-            if (matches(ctor.getParameterTypes(), args)) {
-                return ctor;
+    /**
+     * Like {@link #invoke} but returns empty instead of throwing when no
+     * method matches. A method returning {@code null} or {@code void} is also
+     * reported as empty; exceptions thrown by the method still propagate.
+     */
+    public static Optional<Object> tryInvoke(Object target, String methodName, Object... args) {
+        Method method = lookupMethod(target.getClass(), methodName, args);
+        if (method == null) return Optional.empty();
+        try {
+            return Optional.ofNullable(method.invoke(target, args));
+        } catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    public static boolean hasField(Class<?> cls, String fieldName) {
+        return lookupField(cls, fieldName) != null;
+    }
+
+    public static boolean hasMethod(Class<?> cls, String methodName, Object... args) {
+        return lookupMethod(cls, methodName, args) != null;
+    }
+
+    /**
+     * Resolves {@code fieldName} once and returns an accessor backed by
+     * method handles. The handles live in instance fields, which the JIT
+     * does not treat as constants; for a fully inlined access copy
+     * {@link FieldAccessor#getterHandle()} into a {@code static final} field
+     * of your own and call it with {@code invokeExact}.
+     */
+    public static <T> FieldAccessor<T> accessor(Class<T> owner, String fieldName) {
+        try {
+            return new FieldAccessor<>(findField(owner, fieldName));
+        } catch (ReflectException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Resolves the method with exactly the given parameter types once and
+     * returns an invoker backed by a method handle. See
+     * {@link Invoker#handle()} for calls without boxing.
+     */
+    public static <T> Invoker<T> invoker(Class<T> owner, String methodName, Class<?>... parameterTypes) {
+        try {
+            return new Invoker<>(findExactMethod(owner, methodName, parameterTypes));
+        } catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Pairs the instance fields of {@code source} and {@code target} that
+     * share a name and a compatible type, once. Final and static fields in
+     * the target are skipped, as are fields that cannot be made accessible
+     * (for example in a module that is not open); a subclass field hides a
+     * superclass field of the same name.
+     */
+    public static <S, T> Copier<S, T> copier(Class<S> source, Class<T> target) {
+        Map<String, Field> from = instanceFields(source);
+        Map<String, Field> to = instanceFields(target);
+        List<Field[]> pairs = new ArrayList<>();
+        for (Map.Entry<String, Field> e : from.entrySet()) {
+            Field dst = to.get(e.getKey());
+            if (dst == null || Modifier.isFinal(dst.getModifiers())) continue;
+            Field src = e.getValue();
+            if (dst.getType().isPrimitive()
+                    ? dst.getType() == src.getType()
+                    : dst.getType().isAssignableFrom(wrapper(src.getType()))) {
+                if (trySetAccessible(src) && trySetAccessible(dst)) {
+                    pairs.add(new Field[]{src, dst});
+                }
             }
         }
-        throw new NoSuchMethodException("No matching constructor for " + cls.getName());
+        return new Copier<>(pairs);
+    }
+
+    /** Number of member lookups answered from the per-class cache. */
+    public static long lookupHits() {
+        return LOOKUP_HITS.sum();
+    }
+
+    /** Number of member lookups that had to be resolved against the class. */
+    public static long lookupMisses() {
+        return LOOKUP_MISSES.sum();
+    }
+
+    // -- Internal helpers --
+
+    private static Constructor<?> findMatchingConstructor(Class<?> cls, Object[] args) {
+        Constructor<?> ctor = lookupConstructor(cls, args);
+        if (ctor == null) throw new ReflectException("No matching constructor for " + cls.getName());
+        return ctor;
+    }
+
+    private static Method findMethod(Class<?> cls, String name, Object[] args) {
+        Method method = lookupMethod(cls, name, args);
+        if (method == null) throw new ReflectException("No matching method " + name + " in " + cls.getName());
+        return method;
+    }
+
+    private static Field findField(Class<?> cls, String name) {
+        Field field = lookupField(cls, name);
+        if (field == null) throw new ReflectException("No field " + name + " in " + cls.getName());
+        return field;
+    }
+
+    private static Constructor<?> lookupConstructor(Class<?> cls, Object[] args) {
+        MemberCache cache = MEMBERS.get(cls);
+        Signature key = new Signature(CONSTRUCTOR_NAME, args);
+        Constructor<?> cached = cache.constructors.get(key);
+        if (cached != null || cache.missingConstructors.contains(key)) {
+            LOOKUP_HITS.increment();
+            return cached;
+        }
+        LOOKUP_MISSES.increment();
+        Constructor<?> ctor = mostSpecific(cache.constructorsWithArity(cls, args.length), args);
+        boolean cacheable = key.isVisibleFrom(cls.getClassLoader());
+        if (ctor == null) {
+            if (cacheable) MemberCache.rememberMissing(cache.missingConstructors, key);
+            return null;
+        }
+        ctor = makeAccessible(ctor);
+        return cacheable ? MemberCache.remember(cache.constructors, key, ctor) : ctor;
+    }
+
+    private static Method lookupMethod(Class<?> cls, String name, Object[] args) {
+        MemberCache cache = MEMBERS.get(cls);
+        Signature key = new Signature(name, args);
+        Method cached = cache.methods.get(key);
+        if (cached != null || cache.missingMethods.contains(key)) {
+            LOOKUP_HITS.increment();
+            return cached;
+        }
+        LOOKUP_MISSES.increment();
+        Method method = mostSpecific(cache.methodsWithArity(cls, name, args.length), args);
+        boolean cacheable = key.isVisibleFrom(cls.getClassLoader());
+        if (method == null) {
+            if (cacheable) MemberCache.rememberMissing(cache.missingMethods, key);
+            return null;
+        }
+        method = makeAccessible(method);
+        return cacheable ? MemberCache.remember(cache.methods, key, method) : method;
     }
 
-    private static Method findMethod(Class<?> cls, String name, Object[] args) throws NoSuchMethodException {
-        for (Method m : cls.getMethods()) {
-            if (m.getName().equals(name) && matches(m.getParameterTypes(), args)) {
-                return m;
+    private static Method findExactMethod(Class<?> cls, String name, Class<?>[] types) throws NoSuchMethodException {
+        Method method;
+        try {
+            method = cls.getMethod(name, types);
+        } catch (NoSuchMethodException e) {
+            method = null;
+            for (Class<?> search = cls; search != null && method == null; search = search.getSuperclass()) {
+                try {
+                    method = search.getDeclaredMethod(name, types);
+                } catch (NoSuchMethodException ignored) {
+                    // keep climbing
+                }
             }
+            if (method == null) throw e;
+        }
+        method.setAccessible(true);
+        return method;
+    }
+
+    /** Walks the declared fields instead of probing getDeclaredField, which throws on every miss. */
+    private static Field lookupField(Class<?> cls, String name) {
+        MemberCache cache = MEMBERS.get(cls);
+        Field cached = cache.fields.get(name);
+        if (cached != null || cache.missingFields.contains(name)) {
+            LOOKUP_HITS.increment();
+            return cached;
         }
-        for (Method m : cls.getDeclaredMethods()) {
-            if (m.getName().equals(name) && matches(m.getParameterTypes(), args)) {
-                return m;
+        LOOKUP_MISSES.increment();
+        for (Class<?> search = cls; search != null; search = search.getSuperclass()) {
+            for (Field field : search.getDeclaredFields()) {
+                if (field.getName().equals(name)) {
+                    return MemberCache.remember(cache.fields, name, makeAccessible(field));
+                }
             }
         }
-        throw new NoSuchMethodException("No matching method " + name + " in " + cls.getName());
+        MemberCache.rememberMissing(cache.missingFields, name);
+        return null;
     }
 
-    private static Field findField(Class<?> cls, String name) throws NoSuchFieldException {
-        Class<?> search = cls;
-        while (search != null) {
-            try {
-                return search.getDeclaredField(name);
-            } catch (NoSuchFieldException e) {
-                search = search.getSuperclass();
+    /**
+     * Lookups only resolve; a member the module system or a security manager
+     * keeps closed is still returned, and using it fails with an
+     * {@link IllegalAccessException} that the callers wrap.
+     */
+    private static <M extends AccessibleObject> M makeAccessible(M member) {
+        trySetAccessible(member);
+        return member;
+    }
+
+    private static boolean trySetAccessible(AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+            return true;
+        } catch (RuntimeException e) {
+            // InaccessibleObjectException or SecurityException
+            return false;
+        }
+    }
+
+    private static Map<String, Field> instanceFields(Class<?> cls) {
+        Map<String, Field> fields = new LinkedHashMap<>();
+        for (Class<?> search = cls; search != null; search = search.getSuperclass()) {
+            for (Field f : search.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers()) && !f.isSynthetic()) {
+                    fields.putIfAbsent(f.getName(), f);
+                }
             }
         }
-        throw new NoSuchFieldException(name);
+        return fields;
     }
 
     private static boolean matches(Class<?>[] paramTypes, Object[] args) {
@@ -104,6 +384,33 @@ public final class ReflectUtils {
         return true;
     }
 
+    /**
+     * Picks the applicable candidate whose parameter types are all assignable
+     * to those of every other applicable candidate; on a tie the earlier
+     * candidate wins.
+     */
+    private static <E extends Executable> E mostSpecific(E[] candidates, Object[] args) {
+        E best = null;
+        Class<?>[] bestTypes = null;
+        for (E candidate : candidates) {
+            Class<?>[] types = candidate.getParameterTypes();
+            if (!matches(types, args)) continue;
+            if (best == null || moreSpecific(types, bestTypes)) {
+                best = candidate;
+                bestTypes = types;
+            }
+        }
+        return best;
+    }
+
+    private static boolean moreSpecific(Class<?>[] a, Class<?>[] b) {
+        if (Arrays.equals(a, b)) return false;
+        for (int i = 0; i < a.length; i++) {
+            if (!wrapper(b[i]).isAssignableFrom(wrapper(a[i]))) return false;
+        }
+        return true;
+    }
+
     private static Class<?> wrapper(Class<?> cls) {
         if (!cls.isPrimitive()) return cls;
         if (cls == int.class) return Integer.class;
@@ -117,9 +424,423 @@ public final class ReflectUtils {
         return cls;
     }
 
+    // -- Accessors --
+
+    /**
+     * Field getter/setter built from method handles. The primitive variants
+     * read numeric fields without boxing; they throw {@link ReflectException}
+     * when the field type cannot be converted to the requested primitive.
+     * The raw handles are exposed for callers that keep them in their own
+     * {@code static final} fields, where the JIT can constant-fold them.
+     */
+    public static final class FieldAccessor<T> {
+        private final Field field;
+        private final MethodHandle rawGetter;
+        private final MethodHandle rawSetter;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle intGetter;
+        private final MethodHandle longGetter;
+        private final MethodHandle doubleGetter;
+
+        FieldAccessor(Field field) throws IllegalAccessException {
+            this.field = field;
+            boolean isStatic = Modifier.isStatic(field.getModifiers());
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle get = lookup.unreflectGetter(field);
+            this.rawGetter = get;
+            if (isStatic) get = MethodHandles.dropArguments(get, 0, Object.class);
+            this.getter = get.asType(MethodType.methodType(Object.class, Object.class));
+            this.intGetter = adapt(get, MethodType.methodType(int.class, Object.class));
+            this.longGetter = adapt(get, MethodType.methodType(long.class, Object.class));
+            this.doubleGetter = adapt(get, MethodType.methodType(double.class, Object.class));
+            if (Modifier.isFinal(field.getModifiers())) {
+                this.rawSetter = null;
+                this.setter = null;
+            } else {
+                MethodHandle set = lookup.unreflectSetter(field);
+                this.rawSetter = set;
+                if (isStatic) set = MethodHandles.dropArguments(set, 0, Object.class);
+                this.setter = set.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            }
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * The getter with the field's exact type: {@code (Owner)Type}, or
+         * {@code ()Type} for a static field.
+         */
+        public MethodHandle getterHandle() {
+            return rawGetter;
+        }
+
+        /**
+         * The setter with the field's exact type: {@code (Owner,Type)void},
+         * or {@code (Type)void} for a static field; {@code null} for a final
+         * field.
+         */
+        public MethodHandle setterHandle() {
+            return rawSetter;
+        }
+
+        public Object get(T target) {
+            try {
+                return getter.invokeExact((Object) target);
+            } catch (Throwable t) {
+                throw new ReflectException(t);
+            }
+        }
+
+        public int getInt(T target) {
+            try {
+                return (int) require(intGetter, "int").invokeExact((Object) target);
+            } catch (ReflectException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ReflectException(t);
+            }
+        }
+
+        public long getLong(T target) {
+            try {
+                return (long) require(longGetter, "long").invokeExact((Object) target);
+            } catch (ReflectException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ReflectException(t);
+            }
+        }
+
+        public double getDouble(T target) {
+            try {
+                return (double) require(doubleGetter, "double").invokeExact((Object) target);
+            } catch (ReflectException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ReflectException(t);
+            }
+        }
+
+        public void set(T target, Object value) {
+            try {
+                require(setter, "writable").invokeExact((Object) target, value);
+            } catch (ReflectException e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new ReflectException(t);
+            }
+        }
+
+        private MethodHandle require(MethodHandle handle, String what) {
+            if (handle == null) {
+                throw new ReflectException(new IllegalStateException(
+                        "Field " + field.getName() + " is not " + what));
+            }
+            return handle;
+        }
+
+        private static MethodHandle adapt(MethodHandle handle, MethodType type) {
+            try {
+                return handle.asType(type);
+            } catch (WrongMethodTypeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Method invoker built from a method handle. Static methods ignore the
+     * target argument; {@code void} methods return {@code null}.
+     * {@link #invoke} spreads an argument array and boxes, like
+     * {@link Method#invoke}; callers that need neither keep
+     * {@link #handle()} in a {@code static final} field and call it with
+     * {@code invokeExact}.
+     */
+    public static final class Invoker<T> {
+        private final Method method;
+        private final MethodHandle direct;
+        private final MethodHandle handle;
+
+        Invoker(Method method) throws IllegalAccessException {
+            this.method = method;
+            MethodHandle mh = MethodHandles.lookup().unreflect(method);
+            this.direct = mh;
+            if (Modifier.isStatic(method.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            this.handle = mh.asSpreader(Object[].class, method.getParameterTypes().length)
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * The handle with the method's exact type: the receiver first, then
+         * the declared parameters; no receiver for a static method.
+         */
+        public MethodHandle handle() {
+            return direct;
+        }
+
+        public Object invoke(T target, Object... args) {
+            try {
+                return handle.invokeExact((Object) target, args);
+            } catch (Throwable t) {
+                throw new ReflectException(t);
+            }
+        }
+    }
+
+    /**
+     * Precomputed field-by-field copy between two bean types. Primitive
+     * fields are moved through the typed {@link Field} accessors, so a copy
+     * allocates nothing. Instances are immutable and safe to share.
+     */
+    public static final class Copier<S, T> {
+        private static final int OBJECT = 0, INT = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4,
+                FLOAT = 5, SHORT = 6, BYTE = 7, CHAR = 8;
+
+        private final Field[] sources;
+        private final Field[] targets;
+        private final int[] kinds;
+
+        Copier(List<Field[]> pairs) {
+            int n = pairs.size();
+            this.sources = new Field[n];
+            this.targets = new Field[n];
+            this.kinds = new int[n];
+            for (int i = 0; i < n; i++) {
+                sources[i] = pairs.get(i)[0];
+                targets[i] = pairs.get(i)[1];
+                kinds[i] = kindOf(targets[i].getType());
+            }
+        }
+
+        /** Names of the fields this copier transfers. */
+        public List<String> fieldNames() {
+            List<String> names = new ArrayList<>(sources.length);
+            for (Field f : sources) names.add(f.getName());
+            return names;
+        }
+
+        public T copy(S source, T target) {
+            try {
+                for (int i = 0; i < sources.length; i++) {
+                    Field from = sources[i], to = targets[i];
+                    switch (kinds[i]) {
+                        case INT:     to.setInt(target, from.getInt(source)); break;
+                        case LONG:    to.setLong(target, from.getLong(source)); break;
+                        case DOUBLE:  to.setDouble(target, from.getDouble(source)); break;
+                        case BOOLEAN: to.setBoolean(target, from.getBoolean(source)); break;
+                        case FLOAT:   to.setFloat(target, from.getFloat(source)); break;
+                        case SHORT:   to.setShort(target, from.getShort(source)); break;
+                        case BYTE:    to.setByte(target, from.getByte(source)); break;
+                        case CHAR:    to.setChar(target, from.getChar(source)); break;
+                        default:      to.set(target, from.get(source)); break;
+                    }
+                }
+                return target;
+            } catch (IllegalAccessException e) {
+                throw new ReflectException(e);
+            }
+        }
+
+        /** Copies {@code from[i]} into {@code to[i]} for every index. */
+        public void copyAll(S[] from, T[] to) {
+            copyAll(from, to, false);
+        }
+
+        /**
+         * Copies {@code from[i]} into {@code to[i]} for every index,
+         * optionally splitting the work across the common fork-join pool.
+         */
+        public void copyAll(S[] from, T[] to, boolean parallel) {
+            if (from.length != to.length) {
+                throw new IllegalArgumentException("Length mismatch: "
+                        + from.length + " sources, " + to.length + " targets");
+            }
+            if (parallel) {
+                IntStream.range(0, from.length).parallel().forEach(i -> copy(from[i], to[i]));
+            } else {
+                for (int i = 0; i < from.length; i++) copy(from[i], to[i]);
+            }
+        }
+
+        private static int kindOf(Class<?> type) {
+            if (type == int.class) return INT;
+            if (type == long.class) return LONG;
+            if (type == double.class) return DOUBLE;
+            if (type == boolean.class) return BOOLEAN;
+            if (type == float.class) return FLOAT;
+            if (type == short.class) return SHORT;
+            if (type == byte.class) return BYTE;
+            if (type == char.class) return CHAR;
+            return OBJECT;
+        }
+    }
+
+    // -- Member cache --
+
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    /** Classpath location of precomputed lookup indexes, see {@link #preload(ClassLoader)}. */
+    public static final String INDEX_RESOURCE = "META-INF/reflect-utils.idx";
+
+    private static final LongAdder LOOKUP_HITS = new LongAdder();
+    private static final LongAdder LOOKUP_MISSES = new LongAdder();
+
+    /**
+     * Resolved members per class. Kept in a {@link ClassValue} so the cache
+     * does not pin classes (or their loaders) that would otherwise unload.
+     */
+    private static final ClassValue<MemberCache> MEMBERS = new ClassValue<MemberCache>() {
+        @Override
+        protected MemberCache computeValue(Class<?> type) {
+            return new MemberCache();
+        }
+    };
+
+    private static final Method[] NO_METHODS = new Method[0];
+    private static final Constructor<?>[] NO_CONSTRUCTORS = new Constructor<?>[0];
+
+    private static final class MemberCache {
+        /** Per-map bound; lookups past it still resolve but are not remembered. */
+        static final int MAX_ENTRIES = 256;
+
+        final ConcurrentMap<String, Field> fields = new ConcurrentHashMap<>();
+        final ConcurrentMap<Signature, Method> methods = new ConcurrentHashMap<>();
+        final ConcurrentMap<Signature, Constructor<?>> constructors = new ConcurrentHashMap<>();
+        final Set<String> missingFields = ConcurrentHashMap.newKeySet();
+        final Set<Signature> missingMethods = ConcurrentHashMap.newKeySet();
+        final Set<Signature> missingConstructors = ConcurrentHashMap.newKeySet();
+
+        /** Overload candidates by name, then by arity; built on first miss. */
+        private volatile Map<String, Method[][]> methodIndex;
+        private volatile Constructor<?>[][] constructorIndex;
+
+        Method[] methodsWithArity(Class<?> cls, String name, int arity) {
+            Map<String, Method[][]> index = methodIndex;
+            if (index == null) {
+                methodIndex = index = indexMethods(cls);
+            }
+            Method[][] byArity = index.get(name);
+            return byArity == null || arity >= byArity.length ? NO_METHODS : byArity[arity];
+        }
+
+        Constructor<?>[] constructorsWithArity(Class<?> cls, int arity) {
+            Constructor<?>[][] index = constructorIndex;
+            if (index == null) {
+                constructorIndex = index = byArity(Arrays.<Constructor<?>>asList(cls.getDeclaredConstructors()),
+                        NO_CONSTRUCTORS);
+            }
+            return arity >= index.length ? NO_CONSTRUCTORS : index[arity];
+        }
+
+        /** Public methods first, then declared ones, mirroring the old scan order. */
+        private static Map<String, Method[][]> indexMethods(Class<?> cls) {
+            Map<String, List<Method>> byName = new HashMap<>();
+            Set<Method> seen = new HashSet<>();
+            for (Method m : cls.getMethods()) {
+                if (seen.add(m)) byName.computeIfAbsent(m.getName(), k -> new ArrayList<>()).add(m);
+            }
+            for (Method m : cls.getDeclaredMethods()) {
+                if (seen.add(m)) byName.computeIfAbsent(m.getName(), k -> new ArrayList<>()).add(m);
+            }
+            Map<String, Method[][]> index = new HashMap<>(byName.size() * 2);
+            for (Map.Entry<String, List<Method>> e : byName.entrySet()) {
+                index.put(e.getKey(), byArity(e.getValue(), NO_METHODS));
+            }
+            return index;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <E extends Executable> E[][] byArity(List<E> members, E[] empty) {
+            int max = -1;
+            for (E m : members) max = Math.max(max, m.getParameterCount());
+            E[][] result = (E[][]) Array.newInstance(empty.getClass(), max + 1);
+            for (int arity = 0; arity <= max; arity++) {
+                List<E> group = new ArrayList<>();
+                for (E m : members) {
+                    if (m.getParameterCount() == arity) group.add(m);
+                }
+                result[arity] = group.toArray(empty);
+            }
+            return result;
+        }
+
+        static <K, V> V remember(ConcurrentMap<K, V> map, K key, V value) {
+            if (map.size() >= MAX_ENTRIES) return value;
+            V previous = map.putIfAbsent(key, value);
+            return previous != null ? previous : value;
+        }
+
+        static <K> void rememberMissing(Set<K> missing, K key) {
+            if (missing.size() < MAX_ENTRIES) missing.add(key);
+        }
+    }
+
+    /**
+     * Member name plus the runtime argument classes it was looked up with;
+     * {@code null} arguments are recorded as a {@code null} type. Only
+     * remembered when {@link #isVisibleFrom} the target's loader, so the
+     * cache of a long-lived class never pins a plugin's argument classes.
+     */
+    private static final class Signature {
+        private final String name;
+        private final Class<?>[] argTypes;
+        private final int hash;
+
+        Signature(String name, Object[] args) {
+            this.name = name;
+            this.argTypes = new Class<?>[args.length];
+            for (int i = 0; i < args.length; i++) {
+                argTypes[i] = args[i] == null ? null : args[i].getClass();
+            }
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(argTypes);
+        }
+
+        /** True if every argument class comes from {@code loader} or one of its ancestors. */
+        boolean isVisibleFrom(ClassLoader loader) {
+            for (Class<?> type : argTypes) {
+                if (type == null) continue;
+                ClassLoader own = type.getClassLoader();
+                if (own == null) continue;
+                ClassLoader l = loader;
+                while (l != null && l != own) l = l.getParent();
+                if (l == null) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Signature)) return false;
+            Signature other = (Signature) o;
+            return hash == other.hash
+                    && name.equals(other.name)
+                    && Arrays.equals(argTypes, other.argTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     public static class ReflectException extends RuntimeException {
         public ReflectException(Throwable cause) {
             super(cause);
         }
+
+        /** Missing-member failure; stackless since callers routinely probe for optional members. */
+        private ReflectException(String message) {
+            super(message, null, false, false);
+        }
     }
 }
@@ -1,8 +1,10 @@
 package org.apache.tools.ant.types.resources;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.types.Reference;
@@ -24,6 +26,28 @@ public abstract class CompressedResource extends Resource {
 
     private Resource wrapped;
 
+    /* tamanho descomprimido já calculado e o lastModified do recurso
+       interno no momento do cálculo */
+    private long cachedSize  = UNKNOWN_SIZE;
+    private long cachedStamp = UNKNOWN_DATETIME;
+
+    /* compressão em blocos paralelos; 1 thread mantém o fluxo único */
+    private int threads   = 1;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    /** Tamanho padrão dos blocos na compressão paralela (1 MiB). */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /* codec explícito; null mantém os wrapStream da subclasse */
+    private CompressionCodec codec;
+    private int    level      = CompressionCodec.DEFAULT_LEVEL;
+    private int    bufferSize = 8 * 1024;
+    private File   dictionaryFile;
+    private byte[] dictionary;
+
+    /* algum atributo de compressão foi definido; impede setRefid */
+    private boolean compressionSet;
+
     /* ------------------------------------------------------------------ *
      *  Construtores                                                       *
      * ------------------------------------------------------------------ */
@@ -50,6 +74,59 @@ public abstract class CompressedResource extends Resource {
         wrapped = (Resource) rc.iterator().next();
     }
 
+    /**
+     * Número de threads usadas por {@link #getOutputStream()}. Acima de 1
+     * a saída é comprimida em blocos independentes e concatenados; exige
+     * {@link #supportsConcatenatedStreams()}.
+     */
+    public void setThreads(int threads) {
+        checkAttributesAllowed();
+        compressionSet = true;
+        if (threads < 1) throw new BuildException("threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /** Bytes não comprimidos por bloco na compressão paralela. */
+    public void setBlockSize(int blockSize) {
+        checkAttributesAllowed();
+        compressionSet = true;
+        if (blockSize < 1) throw new BuildException("blockSize must be positive");
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Seleciona um codec de {@link CompressionCodecs} no lugar dos
+     * {@code wrapStream} da subclasse.
+     */
+    public void setCodec(String name) {
+        checkAttributesAllowed();
+        compressionSet = true;
+        this.codec = CompressionCodecs.get(name);
+    }
+
+    /** Nível de compressão repassado ao codec. */
+    public void setLevel(int level) {
+        checkAttributesAllowed();
+        compressionSet = true;
+        this.level = level;
+    }
+
+    /** Tamanho do buffer dos fluxos do codec. */
+    public void setBufferSize(int bufferSize) {
+        checkAttributesAllowed();
+        compressionSet = true;
+        if (bufferSize < 1) throw new BuildException("bufferSize must be positive");
+        this.bufferSize = bufferSize;
+    }
+
+    /** Arquivo com o dicionário pré‑definido repassado ao codec. */
+    public void setDictionary(File dictionaryFile) {
+        checkAttributesAllowed();
+        compressionSet = true;
+        this.dictionaryFile = dictionaryFile;
+        this.dictionary     = null;
+    }
+
     /* ------------------------------------------------------------------ *
      *  Delegação                                                          *
      * ------------------------------------------------------------------ */
@@ -72,19 +149,50 @@ public abstract class CompressedResource extends Resource {
      *  Tamanho                                                            *
      * ------------------------------------------------------------------ */
 
+    /**
+     * Quando o recurso interno não conhece o tamanho, descomprime uma vez
+     * e guarda o resultado enquanto o lastModified do recurso interno não
+     * mudar. Sem data conhecida o valor não é reaproveitado.
+     */
     public long getSize() {
         if (!isExists()) return 0L;
 
         long known = delegate().getSize();
         if (known != UNKNOWN_SIZE) return known;
 
+        long stamp = delegate().getLastModified();
+        synchronized (this) {
+            if (cachedSize != UNKNOWN_SIZE && stamp != UNKNOWN_DATETIME
+                && stamp == cachedStamp) {
+                return cachedSize;
+            }
+        }
+        long size;
+        try {
+            size = computeUncompressedSize();
+        } catch (IOException e) {
+            throw new BuildException("unable to read " + getName(), e);
+        }
+        synchronized (this) {
+            cachedSize  = size;
+            cachedStamp = stamp;
+        }
+        return size;
+    }
+
+    /**
+     * Calcula o tamanho descomprimido lendo todo o conteúdo. Subclasses
+     * cujo formato guarda o tamanho (ex.: o ISIZE do gzip) podem
+     * sobrescrever para evitar a descompressão.
+     */
+    protected long computeUncompressedSize() throws IOException {
+        byte[] buf = CompressionPool.borrowBuffer();
         try (InputStream in = getInputStream()) {
-            byte[] buf = new byte[8 * 1024];
-            long   n   = 0L;
+            long n = 0L;
             for (int r; (r = in.read(buf)) > 0; ) n += r;
             return n;
-        } catch (IOException e) {
-            throw new BuildException("unable to read " + getName(), e);
+        } finally {
+            CompressionPool.release(buf);
         }
     }
 
@@ -94,12 +202,24 @@ public abstract class CompressedResource extends Resource {
 
     public InputStream  getInputStream()  throws IOException {
         InputStream in = delegate().getInputStream();
-        return in == null ? null : wrapStream(in);
+        return in == null ? null : decompress(in);
     }
 
     public OutputStream getOutputStream() throws IOException {
         OutputStream out = delegate().getOutputStream();
-        return out == null ? null : wrapStream(out);
+        if (out == null) return null;
+        if (threads <= 1) return compress(out);
+        if (codec != null ? !codec.supportsConcatenation()
+                          : !supportsConcatenatedStreams()) {
+            throw new BuildException(compressionName()
+                                     + " does not support parallel compression");
+        }
+        return new ParallelCompressingOutputStream(out,
+            new ParallelCompressingOutputStream.BlockCompressor() {
+                public OutputStream wrap(OutputStream block) throws IOException {
+                    return compress(block);
+                }
+            }, blockSize, threads);
     }
 
 
@@ -114,7 +234,7 @@ public abstract class CompressedResource extends Resource {
      * ------------------------------------------------------------------ */
 
     public String toString() {
-        return getCompressionName() + " compressed " + delegate();
+        return compressionName() + " compressed " + delegate();
     }
 
     /* ------------------------------------------------------------------ *
@@ -125,6 +245,35 @@ public abstract class CompressedResource extends Resource {
     protected abstract OutputStream wrapStream(OutputStream out) throws IOException;
     protected abstract String getCompressionName();
 
+    /**
+     * Indica se o formato admite vários fluxos comprimidos concatenados
+     * (gzip, bzip2), condição para {@link #setThreads(int)} acima de 1.
+     */
+    protected boolean supportsConcatenatedStreams() {
+        return false;
+    }
+
+    private InputStream decompress(InputStream in) throws IOException {
+        return codec == null ? wrapStream(in)
+            : codec.decompress(in, bufferSize, dictionary());
+    }
+
+    private OutputStream compress(OutputStream out) throws IOException {
+        return codec == null ? wrapStream(out)
+            : codec.compress(out, level, bufferSize, dictionary());
+    }
+
+    private String compressionName() {
+        return codec == null ? getCompressionName() : codec.getName();
+    }
+
+    private synchronized byte[] dictionary() throws IOException {
+        if (dictionary == null && dictionaryFile != null) {
+            dictionary = Files.readAllBytes(dictionaryFile.toPath());
+        }
+        return dictionary;
+    }
+
     private Resource delegate() {
         if (isReference()) return (Resource) getCheckedRef();
         if (wrapped == null) throw new BuildException("no nested resource");
@@ -137,6 +286,7 @@ public abstract class CompressedResource extends Resource {
 
   
     public void setRefid(Reference r) {
+        if (compressionSet) throw tooManyAttributes();
         if (wrapped != null) throw noChildrenAllowed();
         super.setRefid(r);
     }
@@ -0,0 +1,48 @@
+package org.apache.tools.ant.types.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Formato de compressão plugável usado por {@link CompressedResource}.
+ *
+ * <p>Implementações são registradas em {@link CompressionCodecs}, seja
+ * explicitamente ou via <code>META-INF/services</code>, o que permite
+ * acrescentar codecs (zstd, lz4, ...) sem alterar as subclasses de
+ * {@link CompressedResource}.</p>
+ */
+public interface CompressionCodec {
+
+    /** Nível que deixa o codec escolher o próprio padrão. */
+    int DEFAULT_LEVEL = -1;
+
+    /** Nome pelo qual o codec é selecionado, ex.: {@code "gzip"}. */
+    String getName();
+
+    /**
+     * Abre um fluxo que descomprime {@code in}.
+     * @param bufferSize tamanho do buffer interno.
+     * @param dictionary dicionário pré‑definido ou {@code null}.
+     * @throws IOException se o cabeçalho for inválido ou o codec não
+     *         aceitar dicionários.
+     */
+    InputStream decompress(InputStream in, int bufferSize, byte[] dictionary)
+        throws IOException;
+
+    /**
+     * Abre um fluxo que comprime para {@code out}.
+     * @param level nível de compressão ou {@link #DEFAULT_LEVEL}.
+     * @param bufferSize tamanho do buffer interno.
+     * @param dictionary dicionário pré‑definido ou {@code null}.
+     * @throws IOException se o codec não aceitar o nível ou dicionários.
+     */
+    OutputStream compress(OutputStream out, int level, int bufferSize,
+                          byte[] dictionary) throws IOException;
+
+    /**
+     * Indica se vários fluxos comprimidos concatenados formam um fluxo
+     * válido, requisito da compressão paralela em blocos.
+     */
+    boolean supportsConcatenation();
+}
@@ -0,0 +1,170 @@
+package org.apache.tools.ant.types.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Registro de {@link CompressionCodec}s por nome.
+ *
+ * <p>Traz {@code gzip} e {@code deflate} (zlib, com suporte a
+ * dicionário) e carrega, na primeira utilização, os codecs declarados em
+ * <code>META-INF/services/org.apache.tools.ant.types.resources.CompressionCodec</code>.</p>
+ */
+public final class CompressionCodecs {
+
+    private static final Map<String, CompressionCodec> CODECS =
+        new ConcurrentHashMap<>();
+
+    static {
+        register(new Gzip());
+        register(new Zlib());
+        for (CompressionCodec c : ServiceLoader.load(CompressionCodec.class)) {
+            register(c);
+        }
+    }
+
+    private CompressionCodecs() { }
+
+    /** Registra (ou substitui) um codec pelo seu nome. */
+    public static void register(CompressionCodec codec) {
+        CODECS.put(codec.getName().toLowerCase(Locale.ROOT), codec);
+    }
+
+    /**
+     * @return o codec com o nome dado.
+     * @throws BuildException se não houver codec com esse nome.
+     */
+    public static CompressionCodec get(String name) {
+        CompressionCodec c = CODECS.get(name.toLowerCase(Locale.ROOT));
+        if (c == null) {
+            throw new BuildException("unknown compression codec '" + name
+                                     + "', known codecs: " + names());
+        }
+        return c;
+    }
+
+    /** Nomes dos codecs registrados, em ordem alfabética. */
+    public static Set<String> names() {
+        return new TreeSet<>(CODECS.keySet());
+    }
+
+    /* ------------------------------------------------------------------ *
+     *  Codecs embutidos                                                   *
+     * ------------------------------------------------------------------ */
+
+    private static final class Gzip implements CompressionCodec {
+        public String getName() { return "gzip"; }
+
+        public boolean supportsConcatenation() { return true; }
+
+        public InputStream decompress(InputStream in, int bufferSize,
+                                      byte[] dictionary) throws IOException {
+            rejectDictionary(dictionary);
+            return new GZIPInputStream(in, bufferSize);
+        }
+
+        public OutputStream compress(OutputStream out, final int level,
+                                     int bufferSize, byte[] dictionary)
+            throws IOException {
+            rejectDictionary(dictionary);
+            return new GZIPOutputStream(out, bufferSize) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+
+        private static void rejectDictionary(byte[] dictionary) throws IOException {
+            if (dictionary != null) {
+                throw new IOException("gzip does not support preset dictionaries");
+            }
+        }
+    }
+
+    private static final class Zlib implements CompressionCodec {
+        public String getName() { return "deflate"; }
+
+        public boolean supportsConcatenation() { return false; }
+
+        public InputStream decompress(InputStream in, int bufferSize,
+                                      byte[] dictionary) {
+            return new DictionaryInflaterInputStream(in, bufferSize, dictionary);
+        }
+
+        public OutputStream compress(OutputStream out, int level,
+                                     int bufferSize, byte[] dictionary) {
+            final Deflater def = CompressionPool.borrowDeflater(level);
+            if (dictionary != null) {
+                def.setDictionary(dictionary);
+            }
+            return new DeflaterOutputStream(out, def, bufferSize) {
+                private boolean closed;
+
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        CompressionPool.release(def);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * InflaterInputStream que fornece o dicionário quando o fluxo o pede
+     * e devolve o Inflater ao pool ao fechar.
+     */
+    static class DictionaryInflaterInputStream extends InflaterInputStream {
+        private final byte[] dictionary;
+        private boolean closed;
+
+        DictionaryInflaterInputStream(InputStream in, int bufferSize,
+                                      byte[] dictionary) {
+            super(in, CompressionPool.borrowInflater(false), bufferSize);
+            this.dictionary = dictionary;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0 && inf.needsDictionary()) {
+                if (dictionary == null) {
+                    throw new IOException("stream requires a preset dictionary");
+                }
+                inf.setDictionary(dictionary);
+                n = super.read(b, off, len);
+            }
+            return n;
+        }
+
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                CompressionPool.release(inf, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.apache.tools.ant.types.resources;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reaproveita Inflaters, Deflaters e buffers entre fluxos comprimidos.
+ *
+ * <p>Criar e finalizar Inflater/Deflater custa memória nativa; ao
+ * processar milhares de recursos pequenos isso aparece no GC. Os
+ * objetos são devolvidos pelo {@code close()} dos fluxos que os usam e
+ * cada fila guarda no máximo {@value #MAX_POOLED} instâncias; o que
+ * excede é liberado na hora.</p>
+ */
+public final class CompressionPool {
+
+    /** Tamanho dos buffers reaproveitados por {@link #borrowBuffer()}. */
+    public static final int BUFFER_SIZE = 8 * 1024;
+
+    /** Máximo de objetos guardados por fila. */
+    public static final int MAX_POOLED = 32;
+
+    private static final BlockingQueue<Inflater> INFLATERS =
+        new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Inflater> RAW_INFLATERS =
+        new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Deflater> DEFLATERS =
+        new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<byte[]> BUFFERS =
+        new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private static final AtomicLong HITS   = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private CompressionPool() { }
+
+    /**
+     * @param nowrap {@code true} para deflate sem cabeçalho zlib.
+     */
+    public static Inflater borrowInflater(boolean nowrap) {
+        Inflater inf = count((nowrap ? RAW_INFLATERS : INFLATERS).poll());
+        return inf != null ? inf : new Inflater(nowrap);
+    }
+
+    /** Devolve um Inflater obtido com {@code borrowInflater(nowrap)}. */
+    public static void release(Inflater inf, boolean nowrap) {
+        inf.reset();
+        if (!(nowrap ? RAW_INFLATERS : INFLATERS).offer(inf)) inf.end();
+    }
+
+    public static Deflater borrowDeflater(int level) {
+        Deflater def = count(DEFLATERS.poll());
+        if (def == null) return new Deflater(level);
+        def.setLevel(level);
+        return def;
+    }
+
+    public static void release(Deflater def) {
+        def.reset();
+        if (!DEFLATERS.offer(def)) def.end();
+    }
+
+    /** Buffer de {@value #BUFFER_SIZE} bytes, com conteúdo indefinido. */
+    public static byte[] borrowBuffer() {
+        byte[] buf = count(BUFFERS.poll());
+        return buf != null ? buf : new byte[BUFFER_SIZE];
+    }
+
+    public static void release(byte[] buf) {
+        if (buf.length == BUFFER_SIZE) BUFFERS.offer(buf);
+    }
+
+    /** Empréstimos atendidos pelo pool. */
+    public static long getHits()   { return HITS.get();   }
+
+    /** Empréstimos que precisaram criar um objeto novo. */
+    public static long getMisses() { return MISSES.get(); }
+
+    private static <T> T count(T pooled) {
+        (pooled != null ? HITS : MISSES).incrementAndGet();
+        return pooled;
+    }
+}
@@ -0,0 +1,144 @@
+package org.apache.tools.ant.types.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * OutputStream que divide os dados em blocos de tamanho fixo, comprime
+ * cada bloco como um fluxo independente num pool de threads e grava os
+ * resultados concatenados, na ordem original.
+ *
+ * <p>Só serve para formatos cujos descompressores aceitam fluxos
+ * concatenados (gzip com vários <i>members</i>, bzip2 com vários
+ * <i>streams</i>).</p>
+ */
+public class ParallelCompressingOutputStream extends OutputStream {
+
+    /** Abre um fluxo comprimido independente sobre {@code out}. */
+    public interface BlockCompressor {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    private final OutputStream    out;
+    private final BlockCompressor compressor;
+    private final ExecutorService pool;
+    private final int             blockSize;
+    private final int             maxPending;
+    private final LinkedList<Future<byte[]>> pending = new LinkedList<>();
+
+    private byte[]  block;
+    private int     count;
+    private boolean wroteBlock;
+    private boolean closed;
+
+    /**
+     * @param out        destino dos blocos comprimidos.
+     * @param compressor fábrica do fluxo comprimido de cada bloco.
+     * @param blockSize  bytes não comprimidos por bloco.
+     * @param threads    número de threads de compressão.
+     */
+    public ParallelCompressingOutputStream(OutputStream out,
+                                           BlockCompressor compressor,
+                                           int blockSize, int threads) {
+        if (blockSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("blockSize and threads must be positive");
+        }
+        this.out        = out;
+        this.compressor = compressor;
+        this.blockSize  = blockSize;
+        this.maxPending = threads * 2;
+        this.block      = new byte[blockSize];
+        this.pool       = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "parallel-compression");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == blockSize) submit();
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off   += n;
+            len   -= n;
+            if (count == blockSize) submit();
+        }
+    }
+
+    /** Grava os blocos já concluídos; não força o fim do bloco atual. */
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!pending.isEmpty() && pending.getFirst().isDone()) {
+            writeFirst();
+        }
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            // saída vazia ainda precisa ser um fluxo válido
+            if (count > 0 || !wroteBlock) submit();
+            while (!pending.isEmpty()) writeFirst();
+        } finally {
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    /* ------------------------------------------------------------------ */
+
+    private void submit() throws IOException {
+        final byte[] data = block;
+        final int    len  = count;
+        block      = new byte[blockSize];
+        count      = 0;
+        wroteBlock = true;
+        pending.add(pool.submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(len / 2 + 64);
+                try (OutputStream z = compressor.wrap(bytes)) {
+                    z.write(data, 0, len);
+                }
+                return bytes.toByteArray();
+            }
+        }));
+        while (pending.size() > maxPending) writeFirst();
+    }
+
+    private void writeFirst() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while compressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("block compression failed", cause);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) throw new IOException("stream closed");
+    }
+}
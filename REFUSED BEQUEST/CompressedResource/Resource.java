@@ -21,6 +21,11 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -48,6 +53,12 @@ public class Resource extends DataType
 
     private static final int NULL_NAME = getMagicNumber("null name".getBytes());
 
+    /** Buffer size used by {@link #copyTo} when neither side is a file. */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /** Upper bound of a single transferFrom call in {@link #copyTo}. */
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
     /**
      * Create a "magic number" for use in hashCode calculations.
      * @param seed byte[] to seed with.
@@ -57,11 +68,21 @@ public class Resource extends DataType
         return new BigInteger(seed).intValue();
     }
 
+    /* Bits of attributesSet; an unset attribute keeps its default. */
+    private static final int EXISTS_SET = 1;
+    private static final int LASTMODIFIED_SET = 2;
+    private static final int DIRECTORY_SET = 4;
+    private static final int SIZE_SET = 8;
+
     private String name = null;
-    private Boolean exists = null;
-    private Long lastmodified = null;
-    private Boolean directory = null;
-    private Long size = null;
+    private boolean exists;
+    private long lastmodified;
+    private boolean directory;
+    private long size;
+    private int attributesSet = 0;
+
+    /* toString() as compared by compareTo, see getSortKey() */
+    private String sortKey = null;
 
     /**
      * Default constructor.
@@ -151,6 +172,7 @@ public class Resource extends DataType
     public void setName(String name) {
         checkAttributesAllowed();
         this.name = name;
+        invalidateSortKey();
     }
 
     /**
@@ -162,7 +184,7 @@ public class Resource extends DataType
             return ((Resource) getCheckedRef()).isExists();
         }
         //default true:
-        return exists == null || exists.booleanValue();
+        return (attributesSet & EXISTS_SET) == 0 || exists;
     }
 
     /**
@@ -171,7 +193,8 @@ public class Resource extends DataType
      */
     public void setExists(boolean exists) {
         checkAttributesAllowed();
-        this.exists = exists ? Boolean.TRUE : Boolean.FALSE;
+        this.exists = exists;
+        attributesSet |= EXISTS_SET;
     }
 
     /**
@@ -184,11 +207,10 @@ public class Resource extends DataType
         if (isReference()) {
             return ((Resource) getCheckedRef()).getLastModified();
         }
-        if (!isExists() || lastmodified == null) {
+        if (!isExists() || (attributesSet & LASTMODIFIED_SET) == 0) {
             return UNKNOWN_DATETIME;
         }
-        long result = lastmodified.longValue();
-        return result < UNKNOWN_DATETIME ? UNKNOWN_DATETIME : result;
+        return lastmodified < UNKNOWN_DATETIME ? UNKNOWN_DATETIME : lastmodified;
     }
 
     /**
@@ -197,7 +219,8 @@ public class Resource extends DataType
      */
     public void setLastModified(long lastmodified) {
         checkAttributesAllowed();
-        this.lastmodified = new Long(lastmodified);
+        this.lastmodified = lastmodified;
+        attributesSet |= LASTMODIFIED_SET;
     }
 
     /**
@@ -209,7 +232,7 @@ public class Resource extends DataType
             return ((Resource) getCheckedRef()).isDirectory();
         }
         //default false:
-        return directory != null && directory.booleanValue();
+        return (attributesSet & DIRECTORY_SET) != 0 && directory;
     }
 
     /**
@@ -218,7 +241,8 @@ public class Resource extends DataType
      */
     public void setDirectory(boolean directory) {
         checkAttributesAllowed();
-        this.directory = directory ? Boolean.TRUE : Boolean.FALSE;
+        this.directory = directory;
+        attributesSet |= DIRECTORY_SET;
     }
 
     /**
@@ -228,7 +252,8 @@ public class Resource extends DataType
      */
     public void setSize(long size) {
         checkAttributesAllowed();
-        this.size = new Long(size > UNKNOWN_SIZE ? size : UNKNOWN_SIZE);
+        this.size = size > UNKNOWN_SIZE ? size : UNKNOWN_SIZE;
+        attributesSet |= SIZE_SET;
     }
 
     /**
@@ -242,7 +267,7 @@ public class Resource extends DataType
             return ((Resource) getCheckedRef()).getSize();
         }
         return isExists()
-            ? (size != null ? size.longValue() : UNKNOWN_SIZE)
+            ? ((attributesSet & SIZE_SET) != 0 ? size : UNKNOWN_SIZE)
             : 0L;
     }
 
@@ -275,7 +300,44 @@ public class Resource extends DataType
             throw new IllegalArgumentException(
                 "Can only be compared with Resources");
         }
-        return toString().compareTo(other.toString());
+        return getSortKey().compareTo(((Resource) other).getSortKey());
+    }
+
+    /**
+     * Get the key {@link #compareTo} orders by: the value of
+     * <code>toString()</code>.  If {@link #isSortKeyCacheable()} allows
+     * it the value is computed once and kept until
+     * {@link #invalidateSortKey()} is called.
+     * @return the sort key.
+     */
+    protected final String getSortKey() {
+        if (isReference() || !isSortKeyCacheable()) {
+            return toString();
+        }
+        String key = sortKey;
+        if (key == null) {
+            key = toString();
+            sortKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Whether {@link #getSortKey()} may keep the value of
+     * <code>toString()</code> between calls.  A subclass returning true
+     * must call {@link #invalidateSortKey()} whenever state that
+     * <code>toString()</code> depends on changes.
+     * @return false; the key is computed on every comparison.
+     */
+    protected boolean isSortKeyCacheable() {
+        return false;
+    }
+
+    /**
+     * Discard the cached sort key, if one is kept.
+     */
+    protected void invalidateSortKey() {
+        sortKey = null;
     }
 
     /**
@@ -336,6 +398,97 @@ public class Resource extends DataType
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Get a ReadableByteChannel for the Resource.
+     *
+     * <p>The default wraps {@link #getInputStream()}; file-backed
+     * Resources override this to hand out a
+     * {@link java.nio.channels.FileChannel FileChannel}, which
+     * {@link #copyTo} recognizes to avoid user-space copies.</p>
+     * @return a channel over this Resource's content.
+     * @throws IOException if unable to provide the content.
+     * @throws UnsupportedOperationException if reading is not
+     *         supported for this Resource type.
+     */
+    public ReadableByteChannel getReadableChannel() throws IOException {
+        if (isReference()) {
+            return ((Resource) getCheckedRef()).getReadableChannel();
+        }
+        InputStream in = getInputStream();
+        return in == null ? null : Channels.newChannel(in);
+    }
+
+    /**
+     * Get a WritableByteChannel for the Resource.
+     *
+     * <p>The default wraps {@link #getOutputStream()}; file-backed
+     * Resources override this to hand out a
+     * {@link java.nio.channels.FileChannel FileChannel}.</p>
+     * @return a channel to which content can be written.
+     * @throws IOException if unable to open the Resource for writing.
+     * @throws UnsupportedOperationException if writing is not
+     *         supported for this Resource type.
+     */
+    public WritableByteChannel getWritableChannel() throws IOException {
+        if (isReference()) {
+            return ((Resource) getCheckedRef()).getWritableChannel();
+        }
+        OutputStream out = getOutputStream();
+        return out == null ? null : Channels.newChannel(out);
+    }
+
+    /**
+     * Copy the content of this Resource to another one.
+     *
+     * <p>When either side provides a FileChannel the copy is delegated
+     * to <code>transferTo</code>/<code>transferFrom</code>, letting the
+     * operating system move the bytes; otherwise a heap buffer is
+     * pumped between the two channels.</p>
+     * @param dest the Resource to write to.
+     * @return the number of bytes copied.
+     * @throws IOException if either side cannot be opened or on I/O error.
+     */
+    public long copyTo(Resource dest) throws IOException {
+        try (ReadableByteChannel in = getReadableChannel();
+             WritableByteChannel out = dest.getWritableChannel()) {
+            if (in == null || out == null) {
+                throw new IOException("cannot copy " + this + " to " + dest);
+            }
+            long copied = 0;
+            if (in instanceof FileChannel) {
+                FileChannel src = (FileChannel) in;
+                long start = src.position();
+                long count = src.size() - start;
+                while (copied < count) {
+                    long n = src.transferTo(start + copied, count - copied, out);
+                    if (n <= 0) {
+                        break; // the file shrank while we copied it
+                    }
+                    copied += n;
+                }
+            } else if (out instanceof FileChannel) {
+                FileChannel dst = (FileChannel) out;
+                long start = dst.position();
+                for (long n; (n = dst.transferFrom(in, start + copied,
+                                                   TRANSFER_CHUNK)) > 0; ) {
+                    copied += n;
+                }
+            } else {
+                // streams go through a byte[] anyway, a direct buffer
+                // would only add a copy
+                ByteBuffer buf = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                while (in.read(buf) >= 0) {
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        copied += out.write(buf);
+                    }
+                    buf.clear();
+                }
+            }
+            return copied;
+        }
+    }
+
     /**
      * Fulfill the ResourceCollection contract.
      * @return an Iterator of Resources.
@@ -410,13 +563,10 @@ public class Resource extends DataType
      * @param r the Reference to set.
      */
     public void setRefid(Reference r) {
-        if (name != null
-            || exists != null
-            || lastmodified != null
-            || directory != null
-            || size != null) {
+        if (name != null || attributesSet != 0) {
             throw tooManyAttributes();
         }
+        invalidateSortKey();
         super.setRefid(r);
     }
 
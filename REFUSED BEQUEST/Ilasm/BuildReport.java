@@ -0,0 +1,222 @@
+/*
+ * Copyright  2000-2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.tools.ant.taskdefs.optional.dotnet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * timings and counts of one tool invocation, appended to a report file
+ * as a single line of JSON so that the reports of a whole build can be
+ * collected in one file and sorted or summed by other tools.
+ * <p>
+ * A line looks like
+ * <pre>
+ * {"task":"ilasm","target":"out.dll","start":1097840000000,
+ *  "outcome":"built","totalNanos":81234567,
+ *  "phases":{"references":345678,"scan":1234567,"command":45678,
+ *   "run":79000000},
+ *  "counts":{"files":120,"outOfDate":3}}
+ * </pre>
+ * and is written on one line. Phase times are in nanoseconds. The
+ * outcome is one of {@link #BUILT}, {@link #UP_TO_DATE},
+ * {@link #UNCHANGED} or {@link #FAILED}.
+ */
+final class BuildReport {
+
+    /** the tool ran */
+    static final String BUILT = "built";
+    /** no input was newer than the output */
+    static final String UP_TO_DATE = "uptodate";
+    /** inputs were newer but matched the recorded digests */
+    static final String UNCHANGED = "unchanged";
+    /** the tool or the task failed */
+    static final String FAILED = "failed";
+
+    private static final Object WRITE_LOCK = new Object();
+
+    private final String task;
+    private final File target;
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map phases = new LinkedHashMap();
+    private final Map counts = new LinkedHashMap();
+    private String outcome = FAILED;
+    private long phaseStart = startNanos;
+
+    /**
+     * @param task name of the task; may be null
+     * @param target the output file; may be null
+     */
+    BuildReport(String task, File target) {
+        this.task = task;
+        this.target = target;
+    }
+
+    /**
+     * start timing a phase
+     */
+    void begin() {
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * stop timing a phase; a phase timed more than once is summed
+     * @param phase name of the phase
+     * @return nanoseconds spent in the phase this time
+     */
+    long end(String phase) {
+        long spent = System.nanoTime() - phaseStart;
+        Long before = (Long) phases.get(phase);
+        phases.put(phase, Long.valueOf(before == null ? spent
+                                       : before.longValue() + spent));
+        return spent;
+    }
+
+    /**
+     * record a count
+     * @param name name of the count
+     * @param value the value
+     */
+    void count(String name, long value) {
+        counts.put(name, Long.valueOf(value));
+    }
+
+    /**
+     * record how the invocation ended
+     * @param outcome one of the outcome constants
+     */
+    void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return how the invocation ended
+     */
+    String getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @param phase name of the phase
+     * @return nanoseconds spent in the phase, 0 if it never ran
+     */
+    long getNanos(String phase) {
+        Long spent = (Long) phases.get(phase);
+        return spent == null ? 0 : spent.longValue();
+    }
+
+    /**
+     * append this report to a file, as one line
+     * @param file the report file; created if need be
+     * @return the line written, without its line break
+     * @throws IOException if the file cannot be written
+     */
+    String appendTo(File file) throws IOException {
+        String line = toJson();
+        synchronized (WRITE_LOCK) {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            Writer out = new OutputStreamWriter(
+                new FileOutputStream(file, true), "UTF-8");
+            try {
+                out.write(line);
+                out.write('\n');
+            } finally {
+                out.close();
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @return the report as a JSON object without line breaks
+     */
+    String toJson() {
+        StringBuffer json = new StringBuffer(256);
+        json.append("{\"task\":");
+        if (task == null) {
+            json.append("null");
+        } else {
+            quote(json, task);
+        }
+        json.append(",\"target\":");
+        if (target == null) {
+            json.append("null");
+        } else {
+            quote(json, target.getPath());
+        }
+        json.append(",\"start\":").append(startMillis);
+        json.append(",\"outcome\":");
+        quote(json, outcome);
+        json.append(",\"totalNanos\":").append(System.nanoTime() - startNanos);
+        json.append(",\"phases\":");
+        appendMap(json, phases);
+        json.append(",\"counts\":");
+        appendMap(json, counts);
+        return json.append('}').toString();
+    }
+
+    private static void appendMap(StringBuffer json, Map values) {
+        json.append('{');
+        for (Iterator i = values.entrySet().iterator(); i.hasNext();) {
+            Map.Entry e = (Map.Entry) i.next();
+            quote(json, (String) e.getKey());
+            json.append(':').append(e.getValue());
+            if (i.hasNext()) {
+                json.append(',');
+            }
+        }
+        json.append('}');
+    }
+
+    private static void quote(StringBuffer json, String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        json.append("\\u");
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            json.append('0');
+                        }
+                        json.append(hex);
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright  2000-2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.tools.ant.taskdefs.optional.dotnet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * persistent record of the content of the inputs of the last successful
+ * build, so that a task can tell byte-identical inputs with new
+ * timestamps apart from real changes.
+ *
+ * Each input is stored as size, modification time and content digest;
+ * when size and time are unchanged the stored digest is trusted and the
+ * file is not read.
+ */
+class DigestStore {
+    private static final String COMMAND_KEY = "#command";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File storeFile;
+    private final Properties entries = new Properties();
+
+    /**
+     * @param storeFile file holding the digests; need not exist yet
+     * @throws IOException if an existing store cannot be read
+     */
+    DigestStore(File storeFile) throws IOException {
+        this.storeFile = storeFile;
+        if (storeFile.isFile()) {
+            InputStream in = new FileInputStream(storeFile);
+            try {
+                entries.load(in);
+            } catch (IllegalArgumentException e) {
+                // a malformed escape: treat the store as empty and rebuild
+                entries.clear();
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * tell whether the inputs and command are the ones last recorded;
+     * inputs only touched since then get their new metadata noted
+     * @param inputs all input files
+     * @param command text describing the command options
+     * @return true if every input has the recorded content; false also
+     *         for a malformed entry
+     * @throws IOException if an input cannot be read
+     */
+    boolean matches(Collection inputs, String command) throws IOException {
+        if (!digest(command).equals(entries.getProperty(COMMAND_KEY))
+            || entries.size() != inputs.size() + 1) {
+            return false;
+        }
+        for (Object o : inputs) {
+            File file = (File) o;
+            String recorded = entries.getProperty(file.getAbsolutePath());
+            if (recorded == null || !file.isFile()) {
+                return false;
+            }
+            String[] parts = recorded.split(",", 3);
+            if (parts.length != 3) {
+                return false;
+            }
+            try {
+                if (Long.parseLong(parts[0]) == file.length()
+                    && Long.parseLong(parts[1]) == file.lastModified()) {
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // hand-edited or truncated entry: rebuild
+                return false;
+            }
+            if (!parts[2].equals(digest(file))) {
+                return false;
+            }
+            // same content, new metadata: remember it so save() need not rehash
+            entries.setProperty(file.getAbsolutePath(), file.length() + ","
+                                + file.lastModified() + "," + parts[2]);
+        }
+        return true;
+    }
+
+    /**
+     * record the inputs and command of a successful build
+     * @param inputs all input files
+     * @param command text describing the command options
+     * @throws IOException if an input cannot be read or the store written
+     */
+    void save(Collection inputs, String command) throws IOException {
+        Properties updated = new Properties();
+        updated.setProperty(COMMAND_KEY, digest(command));
+        for (Object o : inputs) {
+            File file = (File) o;
+            String key = file.getAbsolutePath();
+            long length = file.length();
+            long modified = file.lastModified();
+            String[] old = entries.getProperty(key, ",,").split(",", 3);
+            String hash = old.length == 3
+                && old[0].equals(String.valueOf(length))
+                && old[1].equals(String.valueOf(modified))
+                ? old[2] : digest(file);
+            updated.setProperty(key, length + "," + modified + "," + hash);
+        }
+        File parent = storeFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(storeFile);
+        try {
+            updated.store(out, "input digests");
+        } finally {
+            out.close();
+        }
+        entries.clear();
+        entries.putAll(updated);
+    }
+
+    private static String digest(File file) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[64 * 1024];
+        InputStream in = new FileInputStream(file);
+        try {
+            for (int n; (n = in.read(buf)) >= 0; ) {
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return hex(md.digest());
+    }
+
+    private static String digest(String text) {
+        try {
+            return hex(newDigest().digest(text.getBytes("UTF-8")));
+        } catch (IOException e) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available");
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            out[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(out);
+    }
+}
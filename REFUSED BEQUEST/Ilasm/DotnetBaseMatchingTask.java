@@ -17,15 +17,25 @@
 
 package org.apache.tools.ant.taskdefs.optional.dotnet;
 
+import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.taskdefs.MatchingTask;
 import org.apache.tools.ant.types.FileSet;
 import org.apache.tools.ant.Project;
-import org.apache.tools.ant.DirectoryScanner;
 
 import java.io.File;
-import java.util.Vector;
-import java.util.Hashtable;
-import java.util.Enumeration;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * refactoring of some stuff so that different things (like ILASM)
@@ -39,13 +49,64 @@ public class DotnetBaseMatchingTask extends MatchingTask {
     /**
      * filesets of file to compile
      */
-    protected Vector filesets = new Vector();
+    protected List filesets = new ArrayList();
 
     /**
      *  source directory upon which the search pattern is applied
      */
     protected File srcDir;
 
+    /**
+     * file recording the content of the inputs of the last build;
+     * null for timestamp-only checks
+     */
+    protected File digestFile;
+
+    /**
+     * maximum number of nested filesets scanned at the same time
+     */
+    protected int scanThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * file holding scan results from earlier builds; null to always scan
+     */
+    protected File scanCacheFile;
+
+    private ScanCache scanCache;
+
+    /**
+     * always pass the arguments in a response file
+     */
+    protected boolean useResponseFile;
+
+    /**
+     * number of arguments above which NetCommand uses a response file;
+     * -1 for its default
+     */
+    protected int responseFileThreshold = -1;
+
+    /**
+     * command line of a warm worker to run tools on; null to fork
+     */
+    protected String worker;
+
+    /**
+     * number of idle workers kept alive between invocations
+     */
+    protected int maxWorkers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * milliseconds to wait for a worker's reply before forking instead;
+     * 0 for no limit
+     */
+    protected long workerTimeout = 10 * 60 * 1000;
+
+    /**
+     * file to append a line of timings and counts to per invocation;
+     * null for no report
+     */
+    protected File reportFile;
+
     /**
     * Overridden because we need to be able to set the srcDir.
     */
@@ -71,6 +132,115 @@ public class DotnetBaseMatchingTask extends MatchingTask {
         outputFile = file;
     }
 
+    /**
+     * Set a file in which to record content digests of the inputs.
+     * When set, inputs that are newer than the output but byte-identical
+     * to those of the last successful build do not trigger a rebuild.
+     *
+     *@param  file  the digest store
+     */
+    public void setDigestFile(File file) {
+        digestFile = file;
+    }
+
+    /**
+     * Set how many nested filesets may be scanned concurrently;
+     * 1 scans them one after another.
+     *
+     *@param  threads  the number of scanning threads
+     */
+    public void setScanThreads(int threads) {
+        if (threads < 1) {
+            throw new BuildException("scanThreads must be at least 1");
+        }
+        scanThreads = threads;
+    }
+
+    /**
+     * Set a file in which to keep fileset scan results between builds.
+     * A cached result is reused while no directory below the fileset's
+     * base has been modified.
+     *
+     *@param  file  the scan cache
+     */
+    public void setScanCacheFile(File file) {
+        scanCacheFile = file;
+    }
+
+    /**
+     * Pass the arguments to the tool as <code>@file</code>, a temporary
+     * file that NetCommand writes and deletes, instead of on the command
+     * line. Only for tools that read response files.
+     *
+     *@param  b  true to always use a response file
+     */
+    public void setUseResponseFile(boolean b) {
+        useResponseFile = b;
+    }
+
+    /**
+     * Use a response file whenever the command has more than this many
+     * arguments, to stay below the operating system's command line limit.
+     * Only for tools that read response files.
+     *
+     *@param  count  the number of arguments; 0 to turn automatic response
+     *               files off
+     */
+    public void setResponseFileThreshold(int count) {
+        if (count < 0) {
+            throw new BuildException("responseFileThreshold cannot be negative");
+        }
+        responseFileThreshold = count;
+    }
+
+    /**
+     * Run the tool on long-lived worker processes started with this
+     * command line, instead of forking it for every invocation. A worker
+     * that cannot serve a request is replaced by forking the tool.
+     *
+     *@param  commandLine  the worker command line
+     */
+    public void setWorker(String commandLine) {
+        worker = commandLine;
+    }
+
+    /**
+     * Set how long to wait for a worker to answer before giving up on it
+     * and forking the tool instead.
+     *
+     *@param  millis  the timeout in milliseconds; 0 for no limit
+     */
+    public void setWorkerTimeout(long millis) {
+        if (millis < 0) {
+            throw new BuildException("workerTimeout cannot be negative");
+        }
+        workerTimeout = millis;
+    }
+
+    /**
+     * Set how many idle workers are kept alive for reuse; 0 discards
+     * each worker once its request is done.
+     *
+     *@param  count  the number of workers
+     */
+    public void setMaxWorkers(int count) {
+        if (count < 0) {
+            throw new BuildException("maxWorkers cannot be negative");
+        }
+        maxWorkers = count;
+    }
+
+    /**
+     * Set a file to which every tool invocation appends one line of
+     * JSON with its phase timings in nanoseconds, its file counts and
+     * whether it ran or was skipped as up to date.
+     *
+     *@param  file  the report file
+     */
+    public void setReportFile(File file) {
+        reportFile = file;
+    }
+
     /**
      * add a new source directory to the compile
      * @param src
@@ -87,54 +257,170 @@ public class DotnetBaseMatchingTask extends MatchingTask {
         return outputFile;
     }
 
+    /**
+     * create the command to run a tool, on a warm worker if one is
+     * configured
+     * @param title title for the command
+     * @param program the tool to run
+     * @return the command
+     */
+    protected NetCommand createNetCommand(String title, String program) {
+        NetCommand command = worker == null
+            ? new NetCommand(this, title, program)
+            : new WorkerNetCommand(this, title, program,
+                ToolWorkerPool.get(worker, getProject().getBaseDir()),
+                workerTimeout, maxWorkers);
+        command.setUseResponseFile(useResponseFile);
+        if (responseFileThreshold >= 0) {
+            command.setAutomaticResponseFileThreshold(responseFileThreshold);
+        }
+        return command;
+    }
+
     /**
      * create the list of files
-     * @param filesToBuild vector to add files to
+     * @param filesToBuild ordered set to add files to
      * @param outputTimestamp timestamp to compare against
      * @return number of files out of date
      */
-    protected int buildFileList(NetCommand command, Hashtable filesToBuild, long outputTimestamp) {
+    protected int buildFileList(Set filesToBuild, long outputTimestamp) {
         int filesOutOfDate = 0;
         boolean scanImplicitFileset
             = getSrcDir() != null || filesets.size() == 0;
-        if (scanImplicitFileset) {
-            //scan for an implicit fileset if there was a srcdir set
-            //or there was no srcDir set but there was no contained classes
-            if (getSrcDir() == null) {
-                //if there is no src dir here, set it
-                setSrcDir(getProject().resolveFile("."));
+        //start walking the included source directories in the background
+        ExecutorService pool = null;
+        Future[] scans = new Future[filesets.size()];
+        if (scanThreads > 1 && filesets.size() > 1) {
+            pool = Executors.newFixedThreadPool(
+                Math.min(scanThreads, filesets.size()));
+            for (int i = 0; i < filesets.size(); i++) {
+                final FileSet fs = (FileSet) filesets.get(i);
+                scans[i] = pool.submit(new Callable() {
+                    public Object call() {
+                        return getIncludedFiles(fs);
+                    }
+                });
+            }
+        }
+        try {
+            if (scanImplicitFileset) {
+                filesOutOfDate = scanImplicitFileset(filesToBuild,
+                                                     outputTimestamp);
             }
-            log("working from source directory " + getSrcDir(),
-                    Project.MSG_VERBOSE);
-            //get dependencies list.
-            DirectoryScanner scanner = getDirectoryScanner(getSrcDir());
-            filesOutOfDate = command.scanOneFileset(scanner,
-                    filesToBuild, outputTimestamp);
-        }
-        //get any included source directories
-        for (int i = 0; i < filesets.size(); i++) {
-            FileSet fs = (FileSet) filesets.elementAt(i);
-            filesOutOfDate += command.scanOneFileset(
-                    fs.getDirectoryScanner(getProject()),
-                    filesToBuild,
-                    outputTimestamp);
+            //merge the included source directories in declaration order
+            for (int i = 0; i < filesets.size(); i++) {
+                FileSet fs = (FileSet) filesets.get(i);
+                String[] files = scans[i] != null
+                    ? (String[]) scans[i].get() : getIncludedFiles(fs);
+                filesOutOfDate += addFiles(fs.getDir(getProject()), files,
+                                           filesToBuild, outputTimestamp);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof BuildException ? (BuildException) cause
+                : new BuildException(cause);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        return filesOutOfDate;
+    }
+
+    /**
+     * scan for an implicit fileset if there was a srcdir set
+     * or there was no srcDir set but there was no contained classes
+     */
+    private int scanImplicitFileset(Set filesToBuild, long outputTimestamp) {
+        if (getSrcDir() == null) {
+            //if there is no src dir here, set it
+            setSrcDir(getProject().resolveFile("."));
+        }
+        log("working from source directory " + getSrcDir(),
+                Project.MSG_VERBOSE);
+        //get dependencies list.
+        fileset.setDir(getSrcDir());
+        return addFiles(getSrcDir(), getIncludedFiles(fileset),
+                        filesToBuild, outputTimestamp);
+    }
+
+    /**
+     * get the files a fileset includes, from the scan cache if one is
+     * configured and still valid
+     * @param fs the fileset
+     * @return file names relative to the fileset's directory
+     */
+    protected String[] getIncludedFiles(FileSet fs) {
+        ScanCache cache = getScanCache();
+        return cache != null ? cache.getIncludedFiles(fs, getProject())
+            : fs.getDirectoryScanner(getProject()).getIncludedFiles();
+    }
+
+    /**
+     * write back the scan cache, if one is configured
+     */
+    protected void saveScanCache() {
+        ScanCache cache;
+        synchronized (this) {
+            cache = scanCache;
+        }
+        if (cache != null) {
+            try {
+                cache.save();
+            } catch (IOException e) {
+                log("could not write scan cache " + scanCacheFile + ": " + e,
+                    Project.MSG_WARN);
+            }
+        }
+    }
+
+    private synchronized ScanCache getScanCache() {
+        if (scanCache == null && scanCacheFile != null) {
+            scanCache = new ScanCache(scanCacheFile);
         }
+        return scanCache;
+    }
 
+    /**
+     * add files to the list of files to build, the way
+     * NetCommand.scanOneFileset does for a scanner
+     * @param base the directory the names are relative to
+     * @param files the file names
+     * @param filesToBuild ordered set to add files to
+     * @param outputTimestamp timestamp to compare against
+     * @return number of added files that are out of date
+     */
+    protected int addFiles(File base, String[] files, Set filesToBuild,
+                           long outputTimestamp) {
+        int filesOutOfDate = 0;
+        for (int i = 0; i < files.length; i++) {
+            File targetFile = new File(base, files[i]);
+            if (filesToBuild.add(targetFile)) {
+                if (targetFile.lastModified() > outputTimestamp) {
+                    filesOutOfDate++;
+                    log(targetFile.toString() + " is out of date",
+                        Project.MSG_VERBOSE);
+                } else {
+                    log(targetFile.toString(), Project.MSG_VERBOSE);
+                }
+            }
+        }
         return filesOutOfDate;
     }
 
     /**
      * add the list of files to a command
-     * @param filesToBuild vector of files
+     * @param filesToBuild ordered set of files
      * @param command the command to append to
      */
-    protected void addFilesToCommand(Hashtable filesToBuild, NetCommand command) {
+    protected void addFilesToCommand(Set filesToBuild, NetCommand command) {
         int count = filesToBuild.size();
         log("compiling " + count + " file" + ((count == 1) ? "" : "s"));
-        Enumeration files = filesToBuild.elements();
-        while (files.hasMoreElements()) {
-            File file = (File) files.nextElement();
-            command.addArgument(file.toString());
+        for (Iterator files = filesToBuild.iterator(); files.hasNext();) {
+            command.addArgument(files.next().toString());
         }
     }
 
@@ -152,27 +438,140 @@ public class DotnetBaseMatchingTask extends MatchingTask {
         return outputTimestamp;
     }
 
+    /**
+     * add arguments naming referenced files, which go after the options
+     * and before the source files; timed apart from the source scan.
+     * Does nothing by default.
+     * @param command the command to append to
+     */
+    protected void addReferencesToCommand(NetCommand command) {
+    }
+
+    /**
+     * describe everything besides the input files that affects the
+     * output, for the digest check; override to add the task's options
+     * @return a description of the command options
+     */
+    protected String getCommandSignature() {
+        return "";
+    }
+
+    /**
+     * list inputs other than the source files, such as references,
+     * whose content is part of the digest check
+     * @return a collection of files
+     */
+    protected Collection getDigestInputs() {
+        return Collections.EMPTY_LIST;
+    }
+
     /**
      * finish off the command by adding all dependent files, execute
      * @param command
      */
     protected void addFilesAndExecute(NetCommand command, boolean ignoreTimestamps) {
         long outputTimestamp = getOutputFileTimestamp();
-        Hashtable filesToBuild = new Hashtable();
-        int filesOutOfDate = buildFileList(command, filesToBuild, outputTimestamp);
+        Set filesToBuild = new LinkedHashSet();
+        BuildReport report = new BuildReport(getTaskName(), getDestFile());
+        ScanCache cache = getScanCache();
+        long cacheHits = cache == null ? 0 : cache.getHits();
+        long cacheMisses = cache == null ? 0 : cache.getMisses();
+        try {
+            buildAndExecute(command, filesToBuild, outputTimestamp, report);
+        } finally {
+            saveScanCache();
+            if (cache != null) {
+                report.count("scanCacheHits", cache.getHits() - cacheHits);
+                report.count("scanCacheMisses",
+                             cache.getMisses() - cacheMisses);
+            }
+            writeReport(report);
+        }
+    }
+
+    private void buildAndExecute(NetCommand command, Set filesToBuild,
+                                 long outputTimestamp, BuildReport report) {
+        report.begin();
+        addReferencesToCommand(command);
+        report.end("references");
+        report.begin();
+        int filesOutOfDate = buildFileList(filesToBuild, outputTimestamp);
+        report.end("scan");
+        report.count("files", filesToBuild.size());
+        report.count("outOfDate", filesOutOfDate);
 
         //add the files to the command
+        report.begin();
         addFilesToCommand(filesToBuild, command);
+        report.end("command");
+        runIfOutOfDate(command, filesToBuild, filesOutOfDate,
+                       outputTimestamp, report);
+    }
 
-
+    private void runIfOutOfDate(NetCommand command, Set filesToBuild,
+                                int filesOutOfDate, long outputTimestamp,
+                                BuildReport report) {
         //now run the command of exe + settings + files
         if (filesOutOfDate > 0) {
-            command.runCommand();
+            DigestStore digests = null;
+            Collection inputs = null;
+            String signature = null;
+            try {
+                if (digestFile != null) {
+                    report.begin();
+                    digests = new DigestStore(digestFile);
+                    inputs = new LinkedHashSet(filesToBuild);
+                    inputs.addAll(getDigestInputs());
+                    signature = getCommandSignature();
+                    boolean unchanged = outputTimestamp > 0
+                        && digests.matches(inputs, signature);
+                    report.end("digest");
+                    if (unchanged) {
+                        log("inputs unchanged since last build, "
+                            + "output file is up to date", Project.MSG_VERBOSE);
+                        digests.save(inputs, signature);
+                        report.setOutcome(BuildReport.UNCHANGED);
+                        return;
+                    }
+                }
+                report.begin();
+                command.runCommand();
+                report.end("run");
+                //with failOnError off a failed run returns normally;
+                //only record inputs that demonstrably produced output
+                if (getOutputFileTimestamp() > outputTimestamp) {
+                    report.setOutcome(BuildReport.BUILT);
+                    if (digests != null) {
+                        digests.save(inputs, signature);
+                    }
+                } else if (digests != null) {
+                    log("output file was not updated, not recording digests",
+                        Project.MSG_VERBOSE);
+                }
+            } catch (IOException e) {
+                throw new BuildException("digest store " + digestFile
+                                         + " failed: " + e, e);
+            }
         } else {
             log("output file is up to date", Project.MSG_VERBOSE);
+            report.setOutcome(BuildReport.UP_TO_DATE);
         }
     }
 
-
-
+    /**
+     * append a report to the report file, if one is configured;
+     * a report that cannot be written only draws a warning
+     * @param report the report
+     */
+    void writeReport(BuildReport report) {
+        if (reportFile == null) {
+            return;
+        }
+        try {
+            log(report.appendTo(reportFile), Project.MSG_DEBUG);
+        } catch (IOException e) {
+            log("could not write build report " + reportFile + ": " + e,
+                Project.MSG_WARN);
+        }
+    }
 }
@@ -5,6 +5,7 @@ import org.apache.tools.ant.types.*;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Ilasm extends DotnetBaseMatchingTask {
 
@@ -13,43 +14,75 @@ public class Ilasm extends DotnetBaseMatchingTask {
         boolean verbose, listing, debug = true, failOnError = true;
         File    outputFile, resourceFile, keyfile;
         final Collection<FileSet> references = new ArrayList<>();
+        final List<Module> modules = new ArrayList<>();
+        int shardThreads = Runtime.getRuntime().availableProcessors();
 
         String targetParam()  { return "exe".equals(targetType) ? "/exe"
                                 : "library".equals(targetType) ? "/dll" : null; }
         String verboseParam() { return verbose ? null : "/quiet"; }
         String listParam()    { return listing ? "/listing" : "/nolisting"; }
         String debugParam()   { return debug ? "/debug" : null; }
-        String outParam()     { return arg("/output=",  outputFile); }
+        String outParam(File f) { return arg("/output=", f); }
         String resParam()     { return arg("/resource=",resourceFile); }
         String keyParam()     { return arg("/keyfile:", keyfile); }
         private static String arg(String p, File f){ return f == null ? null : p + f; }
+
+        String[] options() {
+            return new String[]{ debugParam(), targetParam(), listParam(), outParam(outputFile),
+                                 resParam(), verboseParam(), keyParam(), extraOptions };
+        }
+        /** Resource and key file belong to the main assembly, not to its modules. */
+        String[] options(Module m) {
+            return new String[]{ debugParam(), m.targetParam(), listParam(), outParam(m.destFile),
+                                 arg("/resource=", m.resourceFile), verboseParam(), extraOptions };
+        }
     }
 
     private final Cfg cfg = new Cfg();
 
+    /** References of the current execution, scanned once; see scanReferences. */
+    private List<String> refNames;
+    private List<File>   refFiles;
+
     public void setTargetType(TargetTypes t)   { cfg.targetType   = t.getValue(); }
     public void setTargetType(String t)        { cfg.targetType   = t.toLowerCase(); }
     public void setVerbose(boolean b)          { cfg.verbose      = b; }
     public void setListing(boolean b)          { cfg.listing      = b; }
     public void setDebug(boolean b)            { cfg.debug        = b; }
     public void setFailOnError(boolean b)      { cfg.failOnError  = b; }
-    public void setOutputFile(File f)          { cfg.outputFile   = f; }
+    public void setOutputFile(File f)          { cfg.outputFile   = f; setDestFile(f); }
     public void setResourceFile(File f)        { cfg.resourceFile = f; }
     public void setKeyfile(File f)             { cfg.keyfile      = f; }
     public void setExtraOptions(String s)      { cfg.extraOptions = s; }
     public void addReference(FileSet fs)       { cfg.references.add(fs); }
+    public void addModule(Module m)            { cfg.modules.add(m); }
+    public void setShardThreads(int n) {
+        if (n < 1) throw new BuildException("shardThreads must be at least 1");
+        cfg.shardThreads = n;
+    }
 
+    /**
+     * Assembles each nested {@code <module>} with its own ilasm process,
+     * up to {@code shardThreads} at a time, then the main sources, if any.
+     */
     public void execute() {
         validate();
-        NetCommand cmd = new NetCommand(this, "ilasm", "ilasm");
+        refNames = null;
+        refFiles = null;
+        if (!cfg.modules.isEmpty()) {
+            try {
+                executeModules();
+            } finally {
+                saveScanCache();
+            }
+            if (getSrcDir() == null && filesets.isEmpty()) return;
+        }
+        NetCommand cmd = createNetCommand("ilasm", "ilasm");
         cmd.setFailOnError(cfg.failOnError);
 
-        addArgs(cmd, cfg.debugParam(), cfg.targetParam(), cfg.listParam(),
-                     cfg.outParam(), cfg.resParam(), cfg.verboseParam(),
-                     cfg.keyParam(), cfg.extraOptions);
+        addArgs(cmd, cfg.options());
 
         scanAndAddSources(cmd, "**/*.il");
-        addArgs(cmd, refsParameter());
 
         addFilesAndExecute(cmd, false);
     }
@@ -57,19 +90,144 @@ public class Ilasm extends DotnetBaseMatchingTask {
     private void validate() {
         if (cfg.outputFile != null && cfg.outputFile.isDirectory())
             throw new BuildException("destFile cannot be a directory");
+        for (Module m : cfg.modules) {
+            if (m.destFile == null)
+                throw new BuildException("module needs a destFile");
+            if (!m.isReference() && !m.hasPatterns())
+                m.createInclude().setName("**/*.il");
+        }
+    }
+
+    private void executeModules() {
+        // shared by every module, so timed here rather than in their reports
+        long start = System.nanoTime();
+        final String refs = refsParameter();
+        log("references: " + refNames.size() + " files, scan "
+            + (System.nanoTime() - start) / 1000000 + " ms", Project.MSG_VERBOSE);
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(cfg.shardThreads, cfg.modules.size()));
+        List<Future<?>> shards = new ArrayList<>();
+        for (final Module m : cfg.modules)
+            shards.add(pool.submit(new Runnable() {
+                public void run() { assembleModule(m, refs); }
+            }));
+        pool.shutdown();
+        try {
+            for (Future<?> f : shards) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("interrupted while assembling modules", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof BuildException ? (BuildException) cause
+                                                  : new BuildException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void assembleModule(Module m, String refs) {
+        BuildReport report = new BuildReport(getTaskName(), m.destFile);
+        NetCommand cmd = createNetCommand("ilasm", "ilasm");
+        cmd.setFailOnError(cfg.failOnError);
+        addArgs(cmd, cfg.options(m));
+        addArgs(cmd, refs);
+
+        long outputTimestamp = m.destFile.exists() ? m.destFile.lastModified() : 0;
+        Set<File> files = new LinkedHashSet<>();
+        int outOfDate = addFiles(m.getDir(getProject()), getIncludedFiles(m),
+                                 files, outputTimestamp);
+        report.end("scan");
+        report.count("files", files.size());
+        report.count("outOfDate", outOfDate);
+        try {
+            if (outOfDate > 0) {
+                report.begin();
+                addFilesToCommand(files, cmd);
+                report.end("command");
+                report.begin();
+                cmd.runCommand();
+                report.end("run");
+                if (m.destFile.lastModified() > outputTimestamp)
+                    report.setOutcome(BuildReport.BUILT);
+            } else {
+                report.setOutcome(BuildReport.UP_TO_DATE);
+            }
+        } finally {
+            writeReport(report);
+        }
+        log("module " + m.destFile.getName() + ": " + files.size() + " files, "
+            + outOfDate + " out of date, scan " + report.getNanos("scan") / 1000000
+            + " ms, ilasm " + report.getNanos("run") / 1000000 + " ms",
+            outOfDate > 0 ? Project.MSG_INFO : Project.MSG_VERBOSE);
+    }
+
+    protected void addReferencesToCommand(NetCommand cmd) {
+        addArgs(cmd, refsParameter());
     }
 
     private static void addArgs(NetCommand c, String... args) {
         for (String a : args) if (a != null) c.addArgument(a);
     }
 
+    protected String getCommandSignature() {
+        return Arrays.toString(cfg.options()) + refsParameter();
+    }
+
+    protected Collection<File> getDigestInputs() {
+        scanReferences();
+        List<File> inputs = new ArrayList<>(refFiles);
+        if (cfg.resourceFile != null) inputs.add(cfg.resourceFile);
+        if (cfg.keyfile != null)      inputs.add(cfg.keyfile);
+        return inputs;
+    }
+
     private String refsParameter() {
-        if (cfg.references.isEmpty()) return null;
-        List<String> files = new ArrayList<>();
-        for (FileSet fs : cfg.references)
-            Collections.addAll(files,
-                    fs.getDirectoryScanner(getProject()).getIncludedFiles());
-        return files.isEmpty() ? null : "/reference:" + String.join(",", files);
+        scanReferences();
+        if (refNames.isEmpty()) return null;
+        StringBuilder refs = new StringBuilder("/reference:");
+        for (String f : refNames) {
+            if (refs.length() > "/reference:".length()) refs.append(',');
+            refs.append(f);
+        }
+        return refs.toString();
+    }
+
+    /**
+     * Scans the reference filesets once per execution, so the command,
+     * its signature and the digest inputs all see the same files and the
+     * scan is timed only where the references are added.
+     */
+    private synchronized void scanReferences() {
+        if (refNames != null) return;
+        List<String> names = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        for (FileSet fs : cfg.references) {
+            File dir = fs.getDir(getProject());
+            for (String f : getIncludedFiles(fs)) {
+                names.add(f);
+                files.add(new File(dir, f));
+            }
+        }
+        refNames = names;
+        refFiles = files;
+    }
+
+    /**
+     * A set of sources assembled into its own output by a separate ilasm run.
+     * A module is a library unless its own {@code targetType} says otherwise,
+     * embeds only its own {@code resourceFile}, and is never signed. Without
+     * includes it takes {@code **}{@code /*.il}, like the main sources. Modules
+     * are rebuilt by timestamp alone; the task's {@code digestFile} does not
+     * cover them.
+     */
+    public static class Module extends FileSet {
+        private File destFile, resourceFile;
+        private String targetType = "library";
+        public void setDestFile(File f)          { destFile     = f; }
+        public void setResourceFile(File f)      { resourceFile = f; }
+        public void setTargetType(TargetTypes t) { targetType   = t.getValue(); }
+        String targetParam() { return "exe".equals(targetType) ? "/exe" : "/dll"; }
     }
 
     public static class TargetTypes extends EnumeratedAttribute {
@@ -0,0 +1,346 @@
+/*
+ * Copyright  2000-2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.tools.ant.taskdefs.optional.dotnet;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * persistent cache of fileset scan results.
+ *
+ * An entry is keyed by base directory and patterns and remembers every
+ * directory the scan could find files in, with its modification time.
+ * Adding, removing or renaming a file changes the time of its directory,
+ * so as long as all recorded times are unchanged the included files are
+ * the same and the tree need not be walked and matched again.  Filesets
+ * with selectors depend on more than names and are never cached.
+ *
+ * The cache is stored as a properties file; an unreadable or malformed
+ * file is treated as empty.
+ */
+class ScanCache {
+    /**
+     * directories modified this close to the time a scan was recorded
+     * may have changed again within the file system's time resolution
+     */
+    private static final long TIME_SLACK = 2000;
+
+    private final File cacheFile;
+    private Map entries = new HashMap();
+    private boolean dirty = false;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param cacheFile file holding the cache; need not exist yet
+     */
+    ScanCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+        if (cacheFile.isFile()) {
+            try {
+                entries = load(cacheFile);
+            } catch (IOException e) {
+                entries = new HashMap();
+            } catch (RuntimeException e) {
+                entries = new HashMap();
+            }
+        }
+    }
+
+    /**
+     * get the files included by a fileset, relative to its directory
+     * @param fs the fileset
+     * @param project the project to evaluate the fileset in
+     * @return the included files
+     */
+    String[] getIncludedFiles(FileSet fs, Project project) {
+        if (fs.hasSelectors()) {
+            return fs.getDirectoryScanner(project).getIncludedFiles();
+        }
+        File base = fs.getDir(project);
+        String key = base.getAbsolutePath()
+            + '|' + patterns(fs.mergeIncludes(project))
+            + '|' + patterns(fs.mergeExcludes(project))
+            + '|' + fs.getDefaultexcludes()
+            + '|' + fs.isCaseSensitive()
+            + '|' + fs.isFollowSymlinks();
+        Entry cached;
+        synchronized (this) {
+            cached = (Entry) entries.get(key);
+        }
+        if (cached != null && cached.isValid(base)) {
+            synchronized (this) {
+                hits++;
+            }
+            return cached.files;
+        }
+        long recordedAt = System.currentTimeMillis();
+        RecordingScanner ds = new RecordingScanner();
+        fs.setupDirectoryScanner(ds, project);
+        ds.setBasedir(base);
+        ds.setFollowSymlinks(fs.isFollowSymlinks());
+        ds.setErrorOnMissingDir(fs.getErrorOnMissingDir());
+        ds.scan();
+        String[] files = ds.getIncludedFiles();
+        Entry fresh = Entry.create(files, ds.getScannedDirectories(),
+                                   recordedAt);
+        synchronized (this) {
+            if (fresh != null) {
+                entries.put(key, fresh);
+                dirty = true;
+            }
+            misses++;
+        }
+        return files;
+    }
+
+    /**
+     * @return number of filesets answered from the cache so far
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of filesets that had to be scanned so far
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private static String patterns(String[] patterns) {
+        return patterns == null ? "" : Arrays.asList(patterns).toString();
+    }
+
+    /**
+     * write the cache if anything was scanned since it was loaded
+     * @throws IOException if the cache file cannot be written
+     */
+    synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Properties props = new Properties();
+        int n = 0;
+        for (Iterator i = entries.entrySet().iterator(); i.hasNext(); n++) {
+            Map.Entry e = (Map.Entry) i.next();
+            ((Entry) e.getValue()).store(props, n + ".", (String) e.getKey());
+        }
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(cacheFile);
+        try {
+            props.store(out, "fileset scan cache");
+        } finally {
+            out.close();
+        }
+        dirty = false;
+    }
+
+    private static Map load(File file) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+        Map loaded = new HashMap();
+        for (int n = 0; props.getProperty(n + ".key") != null; n++) {
+            String prefix = n + ".";
+            loaded.put(props.getProperty(prefix + "key"),
+                       Entry.load(props, prefix));
+        }
+        return loaded;
+    }
+
+    /**
+     * splits on newlines; an empty string is an empty list
+     */
+    private static String[] lines(String text) {
+        return text.length() == 0 ? new String[0] : text.split("\n", -1);
+    }
+
+    /**
+     * the result of one scan and the directory times it depends on
+     */
+    private static final class Entry {
+        private final String[] files;
+        private final String[] dirs;
+        private final long[] times;
+        private final long recordedAt;
+
+        private Entry(String[] files, String[] dirs, long[] times,
+                      long recordedAt) {
+            this.files = files;
+            this.dirs = dirs;
+            this.times = times;
+            this.recordedAt = recordedAt;
+        }
+
+        /**
+         * @param files included files
+         * @param found scanned directories, the base first
+         * @param recordedAt time the scan started
+         * @return the entry, or null if a name cannot be stored
+         */
+        static Entry create(String[] files, List found, long recordedAt) {
+            String[] dirs = new String[found.size()];
+            long[] times = new long[found.size()];
+            for (int i = 0; i < dirs.length; i++) {
+                File dir = (File) found.get(i);
+                dirs[i] = dir.getPath();
+                times[i] = dir.lastModified();
+            }
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].indexOf('\n') >= 0) {
+                    return null;
+                }
+            }
+            for (int i = 0; i < dirs.length; i++) {
+                if (dirs[i].indexOf('\n') >= 0) {
+                    return null;
+                }
+            }
+            return new Entry(files, dirs, times, recordedAt);
+        }
+
+        static Entry load(Properties props, String prefix) {
+            String[] files = lines(props.getProperty(prefix + "files", ""));
+            String[] stored = lines(props.getProperty(prefix + "dirs", ""));
+            String[] dirs = new String[stored.length];
+            long[] times = new long[stored.length];
+            for (int i = 0; i < stored.length; i++) {
+                int space = stored[i].indexOf(' ');
+                times[i] = Long.parseLong(stored[i].substring(0, space));
+                dirs[i] = stored[i].substring(space + 1);
+            }
+            return new Entry(files, dirs, times, Long.parseLong(
+                props.getProperty(prefix + "recordedAt")));
+        }
+
+        void store(Properties props, String prefix, String key) {
+            StringBuffer list = new StringBuffer();
+            for (int i = 0; i < files.length; i++) {
+                if (i > 0) {
+                    list.append('\n');
+                }
+                list.append(files[i]);
+            }
+            props.setProperty(prefix + "key", key);
+            props.setProperty(prefix + "recordedAt", String.valueOf(recordedAt));
+            props.setProperty(prefix + "files", list.toString());
+            list.setLength(0);
+            for (int i = 0; i < dirs.length; i++) {
+                if (i > 0) {
+                    list.append('\n');
+                }
+                list.append(times[i]).append(' ').append(dirs[i]);
+            }
+            props.setProperty(prefix + "dirs", list.toString());
+        }
+
+        boolean isValid(File base) {
+            if (dirs.length == 0 || !new File(dirs[0]).equals(base)) {
+                return false;
+            }
+            for (int i = 0; i < dirs.length; i++) {
+                long time = new File(dirs[i]).lastModified();
+                if (time != times[i] || time + TIME_SLACK > recordedAt) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * a scanner that can list the directories its scan could have found
+     * files in.  It descends the way the scan does: only into directories
+     * that could hold included files and whose contents are not wholly
+     * excluded, and through symbolic links only if it follows them.
+     */
+    private static final class RecordingScanner extends DirectoryScanner {
+
+        /**
+         * @return the base directory and every directory below it the
+         *         scan could find files in
+         */
+        List getScannedDirectories() {
+            List found = new ArrayList();
+            Set seen = new HashSet();
+            collect(getBasedir(), "", found, seen);
+            return found;
+        }
+
+        private void collect(File dir, String vpath, List found, Set seen) {
+            if (!dir.isDirectory()) {
+                return;
+            }
+            if (isFollowSymlinks()) {
+                //links may lead back up the tree
+                try {
+                    if (!seen.add(dir.getCanonicalPath())) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+            }
+            found.add(dir);
+            File[] children = dir.listFiles();
+            if (children == null) {
+                return;
+            }
+            for (int i = 0; i < children.length; i++) {
+                File child = children[i];
+                if (!child.isDirectory()
+                    || (!isFollowSymlinks()
+                        && Files.isSymbolicLink(child.toPath()))) {
+                    continue;
+                }
+                String name = vpath + child.getName();
+                //isIncluded first: it readies the patterns scan() released
+                if ((isIncluded(name) || couldHoldIncluded(name))
+                    && !isExcluded(name + File.separator + "**")) {
+                    collect(child, name + File.separator, found, seen);
+                }
+            }
+        }
+    }
+}
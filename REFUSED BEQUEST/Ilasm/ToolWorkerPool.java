@@ -0,0 +1,285 @@
+/*
+ * Copyright  2000-2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.tools.ant.taskdefs.optional.dotnet;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.Commandline;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * long-lived tool processes shared by the tasks of a build, so that
+ * a tool's startup cost is paid once per worker rather than once per
+ * invocation.
+ * <p>
+ * A worker reads requests from its standard input and answers on its
+ * standard output, one request at a time. A request is a line
+ * <code>#request</code> followed by a token, then the program name,
+ * then each argument, one per line, then an empty line. The worker
+ * replies with any number of output lines followed by
+ * <code>#exit</code>, the request's token and the exit code, for
+ * example <code>#exit 5f3a09c1e2d4b678 0</code>. The token is random
+ * per request, so output of the tool cannot end a reply early. Closing
+ * the worker's input tells it to quit.
+ * <p>
+ * A worker serves a single request at a time. A worker that breaks the
+ * protocol, exits, or does not answer within the timeout is destroyed
+ * and never reused.
+ */
+final class ToolWorkerPool {
+
+    private static final String REQUEST = "#request ";
+    private static final String EXIT = "#exit ";
+
+    private static final Map POOLS = new HashMap();
+
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    private static boolean hookInstalled;
+
+    private final String[] command;
+    private final File dir;
+    private final LinkedList idle = new LinkedList();
+
+    private ToolWorkerPool(String[] command, File dir) {
+        this.command = command;
+        this.dir = dir;
+    }
+
+    /**
+     * get the pool for a worker command line, creating it on first use
+     * @param commandLine the worker command line
+     * @param dir the directory workers are started in
+     * @return the pool
+     */
+    static synchronized ToolWorkerPool get(String commandLine, File dir) {
+        String key = commandLine + '\u0000' + dir;
+        ToolWorkerPool pool = (ToolWorkerPool) POOLS.get(key);
+        if (pool == null) {
+            pool = new ToolWorkerPool(
+                Commandline.translateCommandline(commandLine), dir);
+            POOLS.put(key, pool);
+            if (!hookInstalled) {
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+                    public void run() {
+                        shutdownAll();
+                    }
+                });
+                hookInstalled = true;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * stop the idle workers of every pool
+     */
+    static void shutdownAll() {
+        Object[] pools;
+        synchronized (ToolWorkerPool.class) {
+            pools = POOLS.values().toArray();
+        }
+        for (int i = 0; i < pools.length; i++) {
+            ((ToolWorkerPool) pools[i]).shutdown();
+        }
+    }
+
+    /**
+     * run one request on an idle worker, starting a worker if none is idle
+     * @param program the tool to run
+     * @param args its arguments
+     * @param owner task to log the output through
+     * @param timeout milliseconds to wait for the reply; 0 for no limit
+     * @param maxIdle idle workers to keep, counting this one, once done
+     * @return the tool's exit code
+     * @throws IOException if no worker could serve the request
+     */
+    int run(String program, List args, Task owner, long timeout, int maxIdle)
+        throws IOException {
+        Worker worker = borrow();
+        boolean healthy = false;
+        try {
+            int exitCode = worker.run(program, args, owner, timeout);
+            healthy = true;
+            return exitCode;
+        } finally {
+            if (healthy) {
+                release(worker, maxIdle);
+            } else {
+                worker.destroy();
+            }
+        }
+    }
+
+    private Worker borrow() throws IOException {
+        synchronized (idle) {
+            while (!idle.isEmpty()) {
+                Worker worker = (Worker) idle.removeFirst();
+                if (worker.isAlive()) {
+                    return worker;
+                }
+                worker.destroy();
+            }
+        }
+        return new Worker(command, dir);
+    }
+
+    private void release(Worker worker, int maxIdle) {
+        synchronized (idle) {
+            if (idle.size() < maxIdle) {
+                idle.addLast(worker);
+                return;
+            }
+        }
+        worker.destroy();
+    }
+
+    private void shutdown() {
+        synchronized (idle) {
+            for (Iterator i = idle.iterator(); i.hasNext();) {
+                ((Worker) i.next()).destroy();
+            }
+            idle.clear();
+        }
+    }
+
+    /**
+     * one worker process and its request channel.  A daemon thread
+     * moves the worker's output into a queue, so that waiting for a
+     * reply can time out even when a hung child of the worker keeps the
+     * output pipe open.
+     */
+    private static final class Worker {
+        /** queued in place of a line once the output ends */
+        private static final Object EOF = new Object();
+
+        private final Process process;
+        private final Writer in;
+        private final BlockingQueue lines = new LinkedBlockingQueue();
+
+        Worker(String[] command, File dir) throws IOException {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.directory(dir);
+            builder.redirectErrorStream(true);
+            process = builder.start();
+            in = new BufferedWriter(
+                new OutputStreamWriter(process.getOutputStream(), "UTF-8"));
+            final BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), "UTF-8"));
+            Thread pump = new Thread("tool worker output") {
+                public void run() {
+                    try {
+                        for (String line; (line = out.readLine()) != null;) {
+                            lines.add(line);
+                        }
+                    } catch (IOException e) {
+                        //treated as the end of the output
+                    } finally {
+                        lines.add(EOF);
+                    }
+                }
+            };
+            pump.setDaemon(true);
+            pump.start();
+        }
+
+        boolean isAlive() {
+            try {
+                process.exitValue();
+                return false;
+            } catch (IllegalThreadStateException e) {
+                return true;
+            }
+        }
+
+        int run(String program, List args, Task owner, long timeout)
+            throws IOException {
+            String token = Long.toHexString(TOKENS.nextLong());
+            String end = EXIT + token + ' ';
+            in.write(REQUEST);
+            in.write(token);
+            in.write('\n');
+            in.write(program);
+            in.write('\n');
+            for (Iterator i = args.iterator(); i.hasNext();) {
+                in.write((String) i.next());
+                in.write('\n');
+            }
+            in.write('\n');
+            in.flush();
+            long deadline = System.currentTimeMillis() + timeout;
+            while (true) {
+                Object line;
+                try {
+                    if (timeout > 0) {
+                        long left = deadline - System.currentTimeMillis();
+                        line = left > 0
+                            ? lines.poll(left, TimeUnit.MILLISECONDS) : null;
+                    } else {
+                        line = lines.take();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted waiting for worker");
+                }
+                if (line == null) {
+                    throw new IOException("worker did not answer within "
+                                          + timeout + " ms");
+                }
+                if (line == EOF) {
+                    throw new IOException("worker exited during a request");
+                }
+                String text = (String) line;
+                if (text.startsWith(end)) {
+                    try {
+                        return Integer.parseInt(
+                            text.substring(end.length()).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("bad worker reply: " + text);
+                    }
+                }
+                owner.log(text, Project.MSG_INFO);
+            }
+        }
+
+        void destroy() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                //the process is going anyway
+            }
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright  2000-2004 The Apache Software Foundation
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package org.apache.tools.ant.taskdefs.optional.dotnet;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a NetCommand that hands its invocation to a warm worker from a
+ * {@link ToolWorkerPool} and only forks the tool itself if no worker
+ * can take the request.
+ */
+class WorkerNetCommand extends NetCommand {
+
+    private final Task task;
+    private final String title;
+    private final String program;
+    private final ToolWorkerPool pool;
+    private final long timeout;
+    private final int maxIdle;
+    private final List arguments = new ArrayList();
+    private boolean failOnError;
+
+    /**
+     * constructor
+     * @param owner task that owns the command
+     * @param title title for the command
+     * @param program the tool to run
+     * @param pool the workers to run it on
+     * @param timeout milliseconds to wait for a worker's reply; 0 for no limit
+     * @param maxIdle idle workers to keep once the command has run
+     */
+    WorkerNetCommand(Task owner, String title, String program,
+                     ToolWorkerPool pool, long timeout, int maxIdle) {
+        super(owner, title, program);
+        this.task = owner;
+        this.title = title;
+        this.program = program;
+        this.pool = pool;
+        this.timeout = timeout;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * set the fail on error flag
+     * @param b true to fail the build on a non-zero exit code
+     */
+    public void setFailOnError(boolean b) {
+        super.setFailOnError(b);
+        failOnError = b;
+    }
+
+    /**
+     * add an argument to the command, for both the worker and the fork
+     * @param argument the argument; null is ignored
+     */
+    public void addArgument(String argument) {
+        super.addArgument(argument);
+        if (argument != null && argument.length() != 0) {
+            arguments.add(argument);
+        }
+    }
+
+    /**
+     * run the command on a worker, forking the tool if that fails
+     * @throws BuildException if the tool fails and failOnError is set
+     */
+    public void runCommand() throws BuildException {
+        int exitCode;
+        try {
+            exitCode = runOnWorker();
+        } catch (IOException e) {
+            task.log(title + " worker failed, forking " + program
+                     + " instead: " + e.getMessage(), Project.MSG_VERBOSE);
+            super.runCommand();
+            return;
+        }
+        if (exitCode != 0) {
+            if (failOnError) {
+                throw new BuildException(title + " returned: " + exitCode,
+                                         task.getLocation());
+            }
+            task.log(title + " Result: " + exitCode, Project.MSG_ERR);
+        }
+    }
+
+    private int runOnWorker() throws IOException {
+        for (int i = 0; i < arguments.size(); i++) {
+            String argument = (String) arguments.get(i);
+            if (argument.indexOf('\n') >= 0 || argument.indexOf('\r') >= 0) {
+                throw new IOException("argument spans lines");
+            }
+        }
+        return pool.run(program, arguments, task, timeout, maxIdle);
+    }
+}